@@ -0,0 +1,150 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.service.FilmDtoCache;
+import ru.yandex.practicum.filmorate.storage.index.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmRecommender;
+import ru.yandex.practicum.filmorate.storage.index.FriendGraphIndex;
+import ru.yandex.practicum.filmorate.storage.index.LikeIndex;
+import ru.yandex.practicum.filmorate.storage.index.TrendingFilmsIndex;
+import ru.yandex.practicum.filmorate.storage.index.UserLikesIndex;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Поднимает контекст приложения на отдельной базе H2 (по умолчанию in-memory) и наполняет её синтетическими данными:
+ * {@code size} фильмов и лайков, {@code size / 10} пользователей (но не меньше 1000),
+ * у каждого пользователя по {@link #FRIENDS_PER_USER} друзей.
+ */
+final class BenchmarkDatabase {
+    static final int FRIENDS_PER_USER = 20;
+    static final int LIKES_PER_USER = 10;
+    static final int MIN_USERS = 1000;
+    // Настройки H2 из адреса базы в application.properties
+    private static final String URL_SETTINGS = ";QUERY_CACHE_SIZE=128";
+
+    private static final Path DISK_DIRECTORY = Path.of("target", "jmh-db");
+
+    private final ConfigurableApplicationContext context;
+    private final int filmCount;
+    private final int userCount;
+    private final String diskName;
+
+    private BenchmarkDatabase(ConfigurableApplicationContext context, int filmCount, int userCount, String diskName) {
+        this.context = context;
+        this.filmCount = filmCount;
+        this.userCount = userCount;
+        this.diskName = diskName;
+    }
+
+    static BenchmarkDatabase start(int size, String... properties) {
+        return startInMemory(size, URL_SETTINGS, properties);
+    }
+
+    // urlSettings заменяют настройки из адреса в application.properties, например ";QUERY_CACHE_SIZE=8"
+    static BenchmarkDatabase startInMemory(int size, String urlSettings, String... properties) {
+        return start(size, "jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1" + urlSettings, null,
+                properties);
+    }
+
+    // База в файле под target/jmh-db: на ней видна стоимость фиксации транзакций. Файлы удаляются в close()
+    static BenchmarkDatabase startOnDisk(int size) {
+        return startOnDisk(size, URL_SETTINGS);
+    }
+
+    // urlSettings дописываются к адресу базы, например ";CACHE_SIZE=65536"
+    static BenchmarkDatabase startOnDisk(int size, String urlSettings, String... properties) {
+        String diskName = "bench-" + UUID.randomUUID();
+        return start(size, "jdbc:h2:file:./" + DISK_DIRECTORY.resolve(diskName) + urlSettings, diskName, properties);
+    }
+
+    // Свойства передаются аргументами командной строки: у свойств по умолчанию приоритет ниже,
+    // чем у application.properties, и адрес базы из него оказался бы сильнее
+    private static BenchmarkDatabase start(int size, String url, String diskName, String... properties) {
+        List<String> args = new ArrayList<>(List.of(
+                "spring.datasource.url=" + url,
+                "spring.h2.console.enabled=false",
+                "spring.jpa.hibernate.ddl-auto=none",
+                "logging.level.root=WARN",
+                "logging.level.ru.yandex.practicum.filmorate=WARN"
+        ));
+        args.addAll(List.of(properties));
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(FilmorateApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args.stream().map(arg -> "--" + arg).toArray(String[]::new));
+        BenchmarkDatabase database = new BenchmarkDatabase(
+                context, size, Math.max(MIN_USERS, size / LIKES_PER_USER), diskName);
+        database.seed();
+        return database;
+    }
+
+    <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    int filmCount() {
+        return filmCount;
+    }
+
+    int userCount() {
+        return userCount;
+    }
+
+    void close() {
+        context.close();
+        if (diskName == null) {
+            return;
+        }
+        for (String suffix : List.of(".mv.db", ".trace.db")) {
+            try {
+                Files.deleteIfExists(DISK_DIRECTORY.resolve(diskName + suffix));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    // Все строки генерируются внутри базы через SYSTEM_RANGE, поэтому наполнение миллиона строк
+    // не гоняет данные через JDBC. Пары лайков (пользователь, фильм) уникальны: при фиксированном
+    // пользователе шаг по фильмам взаимно прост с их количеством.
+    private void seed() {
+        JdbcTemplate jdbc = bean(JdbcTemplate.class);
+        jdbc.update(String.format("INSERT INTO users(email, name, login, birthday) " +
+                "SELECT CONCAT('user', X, '@bench.ru'), CONCAT('User ', X), CONCAT('user', X), " +
+                "DATEADD(DAY, -MOD(X, 20000), DATE '2005-01-01') " +
+                "FROM SYSTEM_RANGE(1, %d)", userCount));
+        jdbc.update(String.format("INSERT INTO films(name, description, release_date, duration, rating_id) " +
+                "SELECT CONCAT('Film ', X), CONCAT('Synthetic film ', X), " +
+                "DATEADD(DAY, MOD(X, 40000), DATE '1920-01-01'), 60 + MOD(X, 120), 1 + MOD(X, 5) " +
+                "FROM SYSTEM_RANGE(1, %d)", filmCount));
+        jdbc.update(String.format("INSERT INTO film_genres(film_id, genre_id) " +
+                "SELECT X, 1 + MOD(X, 6) FROM SYSTEM_RANGE(1, %1$d) " +
+                "UNION ALL " +
+                "SELECT X, 1 + MOD(X + 3, 6) FROM SYSTEM_RANGE(1, %1$d) WHERE MOD(X, 2) = 0", filmCount));
+        jdbc.update(String.format("INSERT INTO friends(sender, receiver, is_approved) " +
+                "SELECT 1 + MOD(u.X + f.X * 7919, %1$d), 1 + u.X, FALSE " +
+                "FROM SYSTEM_RANGE(0, %1$d - 1) u, SYSTEM_RANGE(1, %2$d) f", userCount, FRIENDS_PER_USER));
+        jdbc.update(String.format("INSERT INTO likes(film_id, user_id) " +
+                "SELECT 1 + MOD(u.X * 7919 + k.X * 104729, %1$d), 1 + u.X " +
+                "FROM SYSTEM_RANGE(0, %2$d - 1) u, SYSTEM_RANGE(0, %3$d - 1) k " +
+                "LIMIT %1$d", filmCount, userCount, LIKES_PER_USER));
+        jdbc.update("UPDATE films f SET like_count = (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.id)");
+        bean(FilmPopularityIndex.class).reload();
+        bean(FriendGraphIndex.class).reload();
+        bean(LikeIndex.class).reload();
+        bean(UserLikesIndex.class).reload();
+        bean(TrendingFilmsIndex.class).reload();
+        bean(FilmRecommender.class).invalidateAll();
+        bean(FilmDtoCache.class).invalidateAll();
+    }
+}
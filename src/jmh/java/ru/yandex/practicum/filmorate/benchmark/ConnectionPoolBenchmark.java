@@ -0,0 +1,113 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.exception.DuplicatedDataException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.storage.FilmRepository;
+import ru.yandex.practicum.filmorate.storage.LikeRepository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность репозиториев фильмов и лайков под нагрузкой из {@value #THREADS} потоков
+ * при разном размере пула соединений. Приложение запускается с профилем prod на файловой базе
+ * с настройками H2 из этого профиля.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(ConnectionPoolBenchmark.THREADS)
+@Fork(1)
+public class ConnectionPoolBenchmark {
+    static final int THREADS = 32;
+
+    @Param({"100000"})
+    private int size;
+
+    @Param({"2", "4", "8", "16", "32"})
+    private int poolSize;
+
+    private BenchmarkDatabase database;
+    private FilmRepository filmRepository;
+    private LikeRepository likeRepository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = BenchmarkDatabase.startOnDisk(size, prodUrlSettings(),
+                "spring.profiles.active=prod",
+                "spring.datasource.hikari.maximum-pool-size=" + poolSize,
+                "spring.datasource.hikari.minimum-idle=" + poolSize
+        );
+        filmRepository = database.bean(FilmRepository.class);
+        likeRepository = database.bean(LikeRepository.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public Optional<Film> getFilmById() {
+        return filmRepository.getFilmById(randomFilmId());
+    }
+
+    @Benchmark
+    public List<Like> findLikesByFilmId() {
+        return likeRepository.findLikesByFilmId(randomFilmId());
+    }
+
+    // Лайк и его снятие: пара могла быть занята сидом или соседним потоком, такие попытки пропускаются
+    @Benchmark
+    public boolean toggleLike() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long filmId = randomFilmId();
+        long userId = 1 + random.nextLong(database.userCount());
+        try {
+            likeRepository.addLike(filmId, userId);
+            likeRepository.deleteLike(filmId, userId);
+            return true;
+        } catch (DuplicatedDataException e) {
+            return false;
+        }
+    }
+
+    // Настройки H2 из адреса базы профиля prod: сам адрес заменяется базой бенчмарка
+    private static String prodUrlSettings() {
+        Properties properties = new Properties();
+        try (InputStream in = ConnectionPoolBenchmark.class.getResourceAsStream("/application-prod.properties")) {
+            properties.load(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        String url = properties.getProperty("spring.datasource.url");
+        return url.substring(url.indexOf(';'));
+    }
+
+    private long randomFilmId() {
+        return 1 + ThreadLocalRandom.current().nextLong(database.filmCount());
+    }
+}
@@ -0,0 +1,111 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.dto.PageDto;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.service.FilmDtoCache;
+import ru.yandex.practicum.filmorate.service.FilmService;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilmBenchmark {
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"10000", "100000", "1000000"})
+    private int size;
+
+    @Param({"10"})
+    private int count;
+
+    private BenchmarkDatabase database;
+    private FilmService filmService;
+    private FilmDtoCache filmCache;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = BenchmarkDatabase.start(size);
+        filmService = database.bean(FilmService.class);
+        filmCache = database.bean(FilmDtoCache.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public List<FilmDto> getPopularFilms() {
+        return filmService.getPopularFilms(count, null, null, false);
+    }
+
+    @Benchmark
+    public List<FilmDto> getPopularFilmsWithLikes() {
+        return filmService.getPopularFilms(count, null, null, true);
+    }
+
+    @Benchmark
+    public List<FilmDto> getPopularFilmsByGenreAndYear() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return filmService.getPopularFilms(count, 1L + random.nextInt(6), 1920 + random.nextInt(100), false);
+    }
+
+    @Benchmark
+    public FilmDto addNewFilm() {
+        Film film = new Film();
+        film.setName("Benchmark film");
+        film.setDescription("Benchmark film description");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        film.setMpaRating(new MpaRating(1L, null));
+        film.setGenres(Set.of(new Genre(1L, null), new Genre(2L, null)));
+        return filmService.addNewFilm(film);
+    }
+
+    // Страница каталога с произвольного места, как ее запрашивает клиент GET /films
+    @Benchmark
+    public PageDto<FilmDto> getFilmsPage() {
+        return filmService.getFilms(randomFilmId(), PAGE_SIZE, false);
+    }
+
+    @Benchmark
+    public Optional<FilmDto> findFilmById() {
+        return filmService.findFilmById(randomFilmId(), false);
+    }
+
+    @Benchmark
+    public Optional<FilmDto> findFilmByIdUncached() {
+        long filmId = randomFilmId();
+        filmCache.invalidate(filmId);
+        return filmService.findFilmById(filmId, false);
+    }
+
+    private long randomFilmId() {
+        return 1 + ThreadLocalRandom.current().nextLong(database.filmCount());
+    }
+}
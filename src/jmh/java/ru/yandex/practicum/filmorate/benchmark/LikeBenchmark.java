@@ -0,0 +1,80 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.storage.LikeRepository;
+import ru.yandex.practicum.filmorate.storage.index.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmRecommender;
+import ru.yandex.practicum.filmorate.storage.index.LikeIndex;
+import ru.yandex.practicum.filmorate.storage.index.TrendingFilmsIndex;
+import ru.yandex.practicum.filmorate.storage.index.UserLikesIndex;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Лайки ставят отдельные пользователи без лайков в исходных данных, перебирая пары
+ * (пользователь, фильм) по порядку; после каждой итерации их лайки удаляются.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LikeBenchmark {
+    private static final int LIKERS = 1000;
+
+    @Param({"10000", "100000", "1000000"})
+    private int size;
+
+    private BenchmarkDatabase database;
+    private LikeRepository likeRepository;
+    private long firstLikerId;
+    private long next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = BenchmarkDatabase.start(size);
+        likeRepository = database.bean(LikeRepository.class);
+        JdbcTemplate jdbc = database.bean(JdbcTemplate.class);
+        firstLikerId = database.userCount() + 1;
+        jdbc.update(String.format("INSERT INTO users(email, name, login, birthday) " +
+                "SELECT CONCAT('liker', X, '@bench.ru'), CONCAT('Liker ', X), CONCAT('liker', X), DATE '2000-01-01' " +
+                "FROM SYSTEM_RANGE(1, %d)", LIKERS));
+    }
+
+    @TearDown(Level.Iteration)
+    public void removeLikes() {
+        database.bean(JdbcTemplate.class).update("DELETE FROM likes WHERE user_id >= ?", firstLikerId);
+        likeRepository.reconcileLikeCounts();
+        database.bean(FilmPopularityIndex.class).reload();
+        database.bean(LikeIndex.class).reload();
+        database.bean(UserLikesIndex.class).reload();
+        database.bean(TrendingFilmsIndex.class).reload();
+        database.bean(FilmRecommender.class).invalidateAll();
+        next = 0;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public void addLike() {
+        long pair = next++;
+        likeRepository.addLike(1 + (pair / LIKERS) % database.filmCount(), firstLikerId + pair % LIKERS);
+    }
+}
@@ -0,0 +1,99 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость подготовки запросов при кэше разобранных запросов H2 по умолчанию (8) и в настройках приложения (128).
+ * На одном соединении по кругу готовятся запросы, которые приложение выполняет при чтении карточек, лент и друзей:
+ * их больше восьми, поэтому при малом кэше LRU каждый раз вытесняет следующий запрос и тот разбирается заново.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatementCacheBenchmark {
+    private static final List<String> STATEMENTS = List.of(
+            "SELECT * FROM films WHERE id = ?",
+            "SELECT * FROM users WHERE id = ?",
+            "SELECT * FROM likes WHERE film_id = ?",
+            "SELECT fg.film_id, g.id, g.name FROM film_genres fg JOIN genres g ON g.id = fg.genre_id " +
+                    "WHERE fg.film_id = ?",
+            "SELECT r.id, r.name FROM films f JOIN ratings r ON r.id = f.rating_id WHERE f.id = ?",
+            "SELECT * FROM films WHERE id > ? ORDER BY id LIMIT 100",
+            "SELECT * FROM users WHERE id > ? ORDER BY id LIMIT 100",
+            "SELECT like_count FROM films WHERE id = ?",
+            "SELECT COUNT(*) FROM likes WHERE user_id = ?",
+            "SELECT sender FROM friends WHERE receiver = ?",
+            "SELECT receiver FROM friends WHERE sender = ?",
+            "SELECT COUNT(*) FROM film_genres WHERE genre_id = ?"
+    );
+
+    @Param({"10000"})
+    private int size;
+
+    @Param({"8", "128"})
+    private int queryCacheSize;
+
+    private BenchmarkDatabase database;
+    // Кэш H2 привязан к соединению, поэтому весь прогон идет на одном
+    private Connection connection;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        database = BenchmarkDatabase.startInMemory(size, ";QUERY_CACHE_SIZE=" + queryCacheSize);
+        connection = database.bean(DataSource.class).getConnection();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+        database.close();
+    }
+
+    @Benchmark
+    public int prepare() throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(nextStatement())) {
+            return statement.getParameterMetaData().getParameterCount();
+        }
+    }
+
+    @Benchmark
+    public long prepareAndExecute() throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(nextStatement())) {
+            statement.setLong(1, 1 + ThreadLocalRandom.current().nextLong(database.userCount()));
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    private String nextStatement() {
+        String sql = STATEMENTS.get(next);
+        next = (next + 1) % STATEMENTS.size();
+        return sql;
+    }
+}
@@ -0,0 +1,82 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость фиксации: одни и те же операторы обновления фильма со сменой жанров выполняются одной транзакцией
+ * и в режиме автофиксации, где каждый оператор фиксируется отдельно.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionBenchmark {
+    @Param({"10000"})
+    private int size;
+
+    @Param({"mem", "file"})
+    private String storage;
+
+    private BenchmarkDatabase database;
+    private TransactionTemplate transactionTemplate;
+    private JdbcTemplate jdbc;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = "file".equals(storage) ? BenchmarkDatabase.startOnDisk(size) : BenchmarkDatabase.start(size);
+        transactionTemplate = database.bean(TransactionTemplate.class);
+        jdbc = database.bean(JdbcTemplate.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public int updateFilmInTransaction() {
+        long filmId = randomFilmId();
+        return transactionTemplate.execute(status -> updateFilm(filmId));
+    }
+
+    @Benchmark
+    public int updateFilmAutoCommit() {
+        return updateFilm(randomFilmId());
+    }
+
+    // Обновление фильма и замена его жанров: одни и те же операторы в обоих режимах
+    private int updateFilm(long filmId) {
+        long genreId = 1 + filmId % 6;
+        int rows = jdbc.update("UPDATE films SET name = ?, description = ?, release_date = ?, duration = ?, " +
+                        "rating_id = ? WHERE id = ?",
+                "Film " + filmId, "Updated description", LocalDate.of(2000, 1, 1), 100, 1L, filmId);
+        rows += jdbc.update("DELETE FROM film_genres WHERE film_id = ?", filmId);
+        rows += jdbc.update("INSERT INTO film_genres(film_id, genre_id) VALUES (?, ?)", filmId, genreId);
+        rows += jdbc.update("INSERT INTO film_genres(film_id, genre_id) VALUES (?, ?)", filmId, 1 + genreId % 6);
+        return rows;
+    }
+
+    private long randomFilmId() {
+        return 1 + ThreadLocalRandom.current().nextLong(database.filmCount());
+    }
+}
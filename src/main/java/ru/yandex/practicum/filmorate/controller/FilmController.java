@@ -3,42 +3,93 @@ package ru.yandex.practicum.filmorate.controller;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.dto.IdDto;
 import ru.yandex.practicum.filmorate.mapper.FilmMapper;
+import ru.yandex.practicum.filmorate.service.BatchIngestionService;
 import ru.yandex.practicum.filmorate.service.FilmService;
 
+import java.io.InputStream;
 import java.util.List;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/films")
 @RequiredArgsConstructor
 public class FilmController {
+    private static final String EXPAND_LIKES = "likes";
+    private static final String PREFER_HEADER = "Prefer";
+    private static final String PREFERENCE_APPLIED_HEADER = "Preference-Applied";
+    private static final String RETURN_MINIMAL = "return=minimal";
+
     private final FilmService filmService;
+    private final BatchIngestionService batchIngestionService;
 
     @GetMapping
-    public List<FilmDto> getAllFilms() {
-        return filmService.getAllFilms();
+    public ResponseEntity<List<FilmDto>> getAllFilms(
+            @RequestParam(defaultValue = "0") long after,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(required = false) Set<String> expand
+    ) {
+        return PageResponses.ok(filmService.getFilms(after, limit, expandsLikes(expand)));
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportFilms() {
+        StreamingResponseBody body = filmService::exportFilms;
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<FilmDto> getFilmById(@PathVariable Long id) {
-        return filmService.findFilmById(id)
+    public ResponseEntity<FilmDto> getFilmById(
+            @PathVariable Long id,
+            @RequestParam(required = false) Set<String> expand
+    ) {
+        return filmService.findFilmById(id, expandsLikes(expand))
                 .map(ResponseEntity::ok)
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     @PostMapping
-    public ResponseEntity<FilmDto> addNewFilm(@Valid @RequestBody FilmDto filmDto) {
+    public ResponseEntity<?> addNewFilm(
+            @Valid @RequestBody FilmDto filmDto,
+            @RequestHeader(value = PREFER_HEADER, required = false) String prefer
+    ) {
         FilmDto createdFilm = filmService.addNewFilm(FilmMapper.mapToFilm(filmDto));
-        return ResponseEntity.ok(createdFilm);
+        return respond(createdFilm, prefer);
+    }
+
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> addNewFilms(InputStream body) {
+        StreamingResponseBody results = out -> batchIngestionService.importFilms(body, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(results);
+    }
+
+    @PutMapping(value = "/likes/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> addLikes(InputStream body) {
+        StreamingResponseBody results = out -> batchIngestionService.importLikes(body, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(results);
     }
 
     @PutMapping
-    public ResponseEntity<FilmDto> updateFilm(@Valid @RequestBody FilmDto filmDto) {
+    public ResponseEntity<?> updateFilm(
+            @Valid @RequestBody FilmDto filmDto,
+            @RequestHeader(value = PREFER_HEADER, required = false) String prefer
+    ) {
         FilmDto updatedFilm = filmService.updateFilm(FilmMapper.mapToFilm(filmDto));
-        return ResponseEntity.ok(updatedFilm);
+        return respond(updatedFilm, prefer);
     }
 
     @PutMapping("/{id}/like/{userId}")
@@ -54,7 +105,36 @@ public class FilmController {
     }
 
     @GetMapping("/popular")
-    public List<FilmDto> getPopularFilms(@RequestParam(defaultValue = "10") int count) {
-        return filmService.getPopularFilms(count);
+    public List<FilmDto> getPopularFilms(
+            @RequestParam(defaultValue = "10") int count,
+            @RequestParam(required = false) Long genreId,
+            @RequestParam(required = false) Integer year,
+            @RequestParam(required = false) Set<String> expand
+    ) {
+        return filmService.getPopularFilms(count, genreId, year, expandsLikes(expand));
+    }
+
+    @GetMapping("/trending")
+    public List<FilmDto> getTrendingFilms(
+            @RequestParam(defaultValue = "24h") String window,
+            @RequestParam(defaultValue = "10") int count,
+            @RequestParam(required = false) Set<String> expand
+    ) {
+        return filmService.getTrendingFilms(window, count, expandsLikes(expand));
+    }
+
+    // Prefer: return=minimal (RFC 7240) сокращает ответ на запись до id фильма
+    private static ResponseEntity<?> respond(FilmDto film, String prefer) {
+        if (prefer != null && prefer.contains(RETURN_MINIMAL)) {
+            return ResponseEntity.ok()
+                    .header(PREFERENCE_APPLIED_HEADER, RETURN_MINIMAL)
+                    .body(new IdDto(film.getId()));
+        }
+        return ResponseEntity.ok(film);
+    }
+
+    // expand=likes добавляет к фильмам первые лайки; их количество отдается всегда
+    private static boolean expandsLikes(Set<String> expand) {
+        return expand != null && expand.contains(EXPAND_LIKES);
     }
 }
\ No newline at end of file
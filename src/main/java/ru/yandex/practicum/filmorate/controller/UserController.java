@@ -3,12 +3,18 @@ package ru.yandex.practicum.filmorate.controller;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.dto.FilmDto;
 import ru.yandex.practicum.filmorate.dto.UserDto;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.BatchIngestionService;
+import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.service.UserService;
 
+import java.io.InputStream;
 import java.util.List;
 
 @Slf4j
@@ -17,11 +23,16 @@ import java.util.List;
 @RequiredArgsConstructor
 public class UserController {
     private final UserService userService;
+    private final FilmService filmService;
+    private final BatchIngestionService batchIngestionService;
 
     @GetMapping
-    public List<UserDto> getAllUsers() {
-        log.info("Запрос на получение всех пользователей");
-        return userService.getAllUsers();
+    public ResponseEntity<List<UserDto>> getAllUsers(
+            @RequestParam(defaultValue = "0") long after,
+            @RequestParam(defaultValue = "100") int limit
+    ) {
+        log.info("Запрос на получение {} пользователей после ID: {}", limit, after);
+        return PageResponses.ok(userService.getUsers(after, limit));
     }
 
     @GetMapping("/{id}")
@@ -37,6 +48,15 @@ public class UserController {
         return ResponseEntity.ok(createdUser);
     }
 
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> addNewUsers(InputStream body) {
+        StreamingResponseBody results = out -> batchIngestionService.importUsers(body, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(results);
+    }
+
     @PutMapping
     public ResponseEntity<UserDto> updateUser(@Valid @RequestBody User user) {
         log.info("Запрос на обновление пользователя с ID: {}", user.getId());
@@ -78,4 +98,32 @@ public class UserController {
         log.info("Запрос на получение общих друзей пользователей с ID: {} и {}", id, otherId);
         return ResponseEntity.ok(userService.getCommonFriends(id, otherId));
     }
-}
\ No newline at end of file
+
+    @GetMapping("/{id}/friends/suggestions")
+    public ResponseEntity<List<UserDto>> getFriendSuggestions(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "10") int limit
+    ) {
+        log.info("Запрос на получение рекомендаций друзей для пользователя с ID: {}", id);
+        return ResponseEntity.ok(userService.getFriendSuggestions(id, limit));
+    }
+
+    @GetMapping("/{id}/recommendations")
+    public ResponseEntity<List<FilmDto>> getRecommendations(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "10") int limit
+    ) {
+        log.info("Запрос на получение рекомендаций фильмов для пользователя с ID: {}", id);
+        return ResponseEntity.ok(filmService.getRecommendations(id, limit));
+    }
+
+    @GetMapping("/{id}/likes")
+    public ResponseEntity<List<FilmDto>> getLikedFilms(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "0") long after,
+            @RequestParam(defaultValue = "100") int limit
+    ) {
+        log.info("Запрос на получение {} фильмов с лайком пользователя с ID: {} после ID: {}", limit, id, after);
+        return PageResponses.ok(filmService.getLikedFilms(id, after, limit));
+    }
+}
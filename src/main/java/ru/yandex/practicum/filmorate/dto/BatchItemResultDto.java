@@ -0,0 +1,23 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchItemResultDto {
+    private int line;
+    private boolean success;
+    private Long id;
+    private String error;
+
+    public static BatchItemResultDto succeeded(int line, Long id) {
+        return new BatchItemResultDto(line, true, id, null);
+    }
+
+    public static BatchItemResultDto failed(int line, String error) {
+        return new BatchItemResultDto(line, false, null, error);
+    }
+}
@@ -1,5 +1,6 @@
 package ru.yandex.practicum.filmorate.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
@@ -28,5 +29,8 @@ public class FilmDto {
     private MpaRatingDto mpa;
     private Set<GenreDto> genres;
 
+    // Заполняется только по запросу с expand=likes, не больше filmorate.films.likes.expand-limit на фильм
     private Set<Like> likes = new HashSet<>();
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long likeCount;
 }
\ No newline at end of file
@@ -0,0 +1,275 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dto.BatchItemResultDto;
+import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.mapper.FilmMapper;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.FilmRepository;
+import ru.yandex.practicum.filmorate.storage.LikeRepository;
+import ru.yandex.practicum.filmorate.storage.UserRepository;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.storage.index.FilmPopularityIndex;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Массовая загрузка фильмов, пользователей и лайков из NDJSON (один объект на строку).
+ * Строки проверяются по отдельности и пишутся пакетами JDBC, каждый пакет в своей транзакции;
+ * результат для каждой строки отдается в NDJSON сразу после записи ее пакета, поэтому в памяти
+ * держатся результаты только одного пакета.
+ */
+@Slf4j
+@Service
+public class BatchIngestionService {
+    private final FilmRepository filmRepository;
+    private final UserRepository userRepository;
+    private final LikeRepository likeRepository;
+    private final ReferenceDataRegistry referenceData;
+    private final FilmPopularityIndex popularityIndex;
+    private final FilmDtoCache filmCache;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final ObjectWriter resultWriter;
+    private final int chunkSize;
+
+    public BatchIngestionService(FilmRepository filmRepository, UserRepository userRepository,
+                                 LikeRepository likeRepository, ReferenceDataRegistry referenceData,
+                                 FilmPopularityIndex popularityIndex, FilmDtoCache filmCache,
+                                 ObjectMapper objectMapper, Validator validator,
+                                 @Value("${filmorate.batch.chunk-size:1000}") int chunkSize) {
+        this.filmRepository = filmRepository;
+        this.userRepository = userRepository;
+        this.likeRepository = likeRepository;
+        this.referenceData = referenceData;
+        this.popularityIndex = popularityIndex;
+        this.filmCache = filmCache;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.resultWriter = objectMapper.writerFor(BatchItemResultDto.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.chunkSize = chunkSize;
+    }
+
+    public void importFilms(InputStream body, OutputStream out) throws IOException {
+        log.info("Запрос на массовую загрузку фильмов");
+        ingest(body, out, this::parseFilm, this::writeFilms);
+    }
+
+    public void importUsers(InputStream body, OutputStream out) throws IOException {
+        log.info("Запрос на массовую загрузку пользователей");
+        ingest(body, out, this::parseUser, this::writeUsers);
+    }
+
+    public void importLikes(InputStream body, OutputStream out) throws IOException {
+        log.info("Запрос на массовую загрузку лайков");
+        ingest(body, out, json -> parse(json, Like.class), this::writeLikes);
+    }
+
+    // Строки с ошибкой разбора тоже копятся до отправки, поэтому пакет пишется, как только вместе с ними
+    // набирается chunkSize результатов: иначе длинная серия ошибочных строк держала бы все их результаты
+    private <T> void ingest(InputStream body, OutputStream outputStream, Function<String, T> parser,
+                            Function<List<BatchItem<T>>, List<BatchItemResultDto>> writer) throws IOException {
+        BufferedOutputStream out = new BufferedOutputStream(outputStream);
+        List<BatchItemResultDto> results = new ArrayList<>(chunkSize);
+        List<BatchItem<T>> chunk = new ArrayList<>(chunkSize);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        int line = 0;
+        int processed = 0;
+        int failed = 0;
+        String json;
+        while ((json = reader.readLine()) != null) {
+            line++;
+            if (json.isBlank()) {
+                continue;
+            }
+            try {
+                chunk.add(new BatchItem<>(line, parser.apply(json)));
+            } catch (ValidationException | NotFoundException e) {
+                results.add(BatchItemResultDto.failed(line, e.getMessage()));
+            }
+            if (chunk.size() + results.size() >= chunkSize) {
+                results.addAll(writeChunk(chunk, writer));
+                processed += results.size();
+                failed += send(results, out);
+                chunk = new ArrayList<>(chunkSize);
+            }
+        }
+        results.addAll(writeChunk(chunk, writer));
+        processed += results.size();
+        failed += send(results, out);
+        log.info("Массовая загрузка завершена: строк {}, с ошибками {}", processed, failed);
+    }
+
+    // Результаты пакета уходят клиенту по порядку строк, после чего список очищается.
+    // Возвращает число строк с ошибкой
+    private int send(List<BatchItemResultDto> results, BufferedOutputStream out) throws IOException {
+        results.sort(Comparator.comparingInt(BatchItemResultDto::getLine));
+        int failed = 0;
+        for (BatchItemResultDto result : results) {
+            resultWriter.writeValue(out, result);
+            out.write('\n');
+            if (!result.isSuccess()) {
+                failed++;
+            }
+        }
+        out.flush();
+        results.clear();
+        return failed;
+    }
+
+    private <T> List<BatchItemResultDto> writeChunk(List<BatchItem<T>> chunk,
+                                                    Function<List<BatchItem<T>>, List<BatchItemResultDto>> writer) {
+        if (chunk.isEmpty()) {
+            return List.of();
+        }
+        try {
+            return writer.apply(chunk);
+        } catch (DataAccessException e) {
+            log.error("Не удалось записать пакет из {} строк: ", chunk.size(), e);
+            return chunk.stream()
+                    .map(item -> BatchItemResultDto.failed(item.line(), "Не удалось сохранить данные"))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private Film parseFilm(String json) {
+        Film film = FilmMapper.mapToFilm(parse(json, FilmDto.class));
+        FilmService.checkReleaseDate(film);
+        if (!referenceData.ratingExists(film.getMpaRating().getId())) {
+            throw new NotFoundException(String.format("Рейтинг с id: %d отсутствует", film.getMpaRating().getId()));
+        }
+        for (Genre genre : film.getGenres()) {
+            if (!referenceData.genreExists(genre.getId())) {
+                throw new NotFoundException(String.format("Жанр c id: %d отсутствует", genre.getId()));
+            }
+        }
+        return film;
+    }
+
+    private User parseUser(String json) {
+        User user = parse(json, User.class);
+        UserService.checkName(user);
+        return user;
+    }
+
+    private <T> T parse(String json, Class<T> type) {
+        T value;
+        try {
+            value = objectMapper.readValue(json, type);
+        } catch (JsonProcessingException e) {
+            throw new ValidationException("Некорректный JSON: " + e.getOriginalMessage());
+        }
+        if (value == null) {
+            throw new ValidationException("Пустая строка данных");
+        }
+        Set<ConstraintViolation<T>> violations = validator.validate(value);
+        if (!violations.isEmpty()) {
+            throw new ValidationException(violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+        }
+        return value;
+    }
+
+    private List<BatchItemResultDto> writeFilms(List<BatchItem<Film>> chunk) {
+        List<Film> films = filmRepository.addNewFilms(chunk.stream()
+                .map(BatchItem::value)
+                .collect(Collectors.toList()));
+        List<BatchItemResultDto> results = new ArrayList<>(chunk.size());
+        for (int idx = 0; idx < chunk.size(); idx++) {
+            results.add(BatchItemResultDto.succeeded(chunk.get(idx).line(), films.get(idx).getId()));
+        }
+        return results;
+    }
+
+    private List<BatchItemResultDto> writeUsers(List<BatchItem<User>> chunk) {
+        Set<String> usedEmails = new HashSet<>(userRepository.findExistingEmails(chunk.stream()
+                .map(item -> item.value().getEmail())
+                .collect(Collectors.toSet())));
+        List<BatchItemResultDto> results = new ArrayList<>(chunk.size());
+        List<BatchItem<User>> accepted = new ArrayList<>(chunk.size());
+        for (BatchItem<User> item : chunk) {
+            if (usedEmails.add(item.value().getEmail())) {
+                accepted.add(item);
+            } else {
+                results.add(BatchItemResultDto.failed(item.line(),
+                        String.format("Этот email уже используется: %s", item.value().getEmail())));
+            }
+        }
+        userRepository.addNewUsers(accepted.stream()
+                .map(BatchItem::value)
+                .collect(Collectors.toList()));
+        accepted.forEach(item -> results.add(BatchItemResultDto.succeeded(item.line(), item.value().getId())));
+        return results;
+    }
+
+    private List<BatchItemResultDto> writeLikes(List<BatchItem<Like>> chunk) {
+        List<BatchItemResultDto> results = new ArrayList<>(chunk.size());
+        List<BatchItem<Like>> accepted = new ArrayList<>(chunk.size());
+        for (BatchItem<Like> item : chunk) {
+            Like like = item.value();
+            if (!popularityIndex.contains(like.getFilmId())) {
+                results.add(BatchItemResultDto.failed(item.line(),
+                        String.format("Фильм id: %d отсутствует", like.getFilmId())));
+            } else if (!userRepository.exists(like.getUserId())) {
+                results.add(BatchItemResultDto.failed(item.line(),
+                        String.format("Пользователь с id=%d не найден", like.getUserId())));
+            } else {
+                accepted.add(item);
+            }
+        }
+        // Записанные лайки идут в порядке принятых строк, остальные пары уже заняты
+        Iterator<Like> written = likeRepository.addLikes(accepted.stream()
+                .map(BatchItem::value)
+                .collect(Collectors.toList())).iterator();
+        Like next = written.hasNext() ? written.next() : null;
+        for (BatchItem<Like> item : accepted) {
+            Like like = item.value();
+            if (like == next) {
+                filmCache.invalidate(like.getFilmId());
+                results.add(BatchItemResultDto.succeeded(item.line(), null));
+                next = written.hasNext() ? written.next() : null;
+            } else {
+                results.add(BatchItemResultDto.failed(item.line(),
+                        String.format("Фильму с id = %d, уже поставлен лайк пользователем с id = %d",
+                                like.getFilmId(), like.getUserId())));
+            }
+        }
+        return results;
+    }
+
+    private record BatchItem<T>(int line, T value) {
+    }
+}
@@ -0,0 +1,134 @@
+package ru.yandex.practicum.filmorate.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.filmorate.dto.FilmDto;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Кэш собранных {@link FilmDto} для карточек фильмов.
+ * Ограничен по размеру (вытесняется давно не запрашиваемый фильм) и по времени жизни записи.
+ * Версии фильмов для отсева устаревших копий хранятся в полосах по id: инвалидация одного фильма
+ * не мешает кэшировать остальные.
+ */
+@Component
+public class FilmDtoCache implements MeterBinder {
+    private static final String CACHE_NAME = "films";
+    private static final int VERSION_STRIPES = 1 << 12;
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final Map<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public FilmDtoCache(@Value("${filmorate.cache.films.max-size:10000}") int maxSize,
+                        @Value("${filmorate.cache.films.ttl:5m}") Duration ttl) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    public synchronized Optional<FilmDto> get(Long filmId) {
+        Entry entry = entries.get(filmId);
+        if (entry != null && System.nanoTime() - entry.createdAt() < ttlNanos) {
+            hits.increment();
+            return Optional.of(entry.film());
+        }
+        if (entry != null) {
+            entries.remove(filmId);
+            evictions.increment();
+        }
+        misses.increment();
+        return Optional.empty();
+    }
+
+    // Метка берется до чтения из базы: если за время чтения фильм инвалидировали, устаревшая копия не попадет в кэш
+    public long stamp(Long filmId) {
+        return versions.get(stripe(filmId));
+    }
+
+    public synchronized void put(FilmDto film, long stamp) {
+        if (maxSize <= 0 || stamp != versions.get(stripe(film.getId()))) {
+            return;
+        }
+        entries.put(film.getId(), new Entry(film, System.nanoTime()));
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (entries.size() > maxSize && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    // Внутри транзакции фильм сбрасывается еще раз после ее завершения: чтение, начатое до фиксации,
+    // могло успеть положить в кэш прежнее состояние
+    public void invalidate(Long filmId) {
+        evict(filmId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(filmId);
+                }
+            });
+        }
+    }
+
+    private synchronized void evict(Long filmId) {
+        versions.incrementAndGet(stripe(filmId));
+        entries.remove(filmId);
+    }
+
+    public synchronized void invalidateAll() {
+        for (int i = 0; i < VERSION_STRIPES; i++) {
+            versions.incrementAndGet(i);
+        }
+        entries.clear();
+    }
+
+    private static int stripe(Long filmId) {
+        return (int) (filmId & (VERSION_STRIPES - 1));
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("cache.gets", hits, LongAdder::doubleValue)
+                .tags("cache", CACHE_NAME, "result", "hit")
+                .description("Количество попаданий в кэш фильмов")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", misses, LongAdder::doubleValue)
+                .tags("cache", CACHE_NAME, "result", "miss")
+                .description("Количество промахов кэша фильмов")
+                .register(registry);
+        FunctionCounter.builder("cache.evictions", evictions, LongAdder::doubleValue)
+                .tags("cache", CACHE_NAME)
+                .description("Количество вытесненных из кэша фильмов")
+                .register(registry);
+        Gauge.builder("cache.size", this, FilmDtoCache::size)
+                .tags("cache", CACHE_NAME)
+                .description("Количество фильмов в кэше")
+                .register(registry);
+    }
+
+    private record Entry(FilmDto film, long createdAt) {
+    }
+}
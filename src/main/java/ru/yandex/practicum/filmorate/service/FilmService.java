@@ -1,16 +1,34 @@
 package ru.yandex.practicum.filmorate.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.dto.PageDto;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.mapper.FilmMapper;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Like;
 import ru.yandex.practicum.filmorate.storage.FilmRepository;
 import ru.yandex.practicum.filmorate.storage.GenreRepository;
 import ru.yandex.practicum.filmorate.storage.LikeRepository;
+import ru.yandex.practicum.filmorate.storage.UserRepository;
+import ru.yandex.practicum.filmorate.storage.index.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmRecommender;
+import ru.yandex.practicum.filmorate.storage.index.TrendingFilmsIndex;
+import ru.yandex.practicum.filmorate.storage.index.TrendingWindow;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -19,71 +37,187 @@ import java.util.stream.Collectors;
 @Service
 public class FilmService {
     private static final LocalDate EARLIEST_RELEASE_DATE = LocalDate.of(1895, 12, 28);
+    private static final int MAX_TOP_FILMS = 1000;
 
     private final FilmRepository filmRepository;
     private final LikeRepository likeRepository;
     private final GenreRepository genreRepository;
+    private final UserRepository userRepository;
+    private final FilmDtoCache filmCache;
+    private final LikeWriteBehindQueue likeQueue;
+    private final FilmRecommender recommender;
+    private final TrendingFilmsIndex trending;
+    private final FilmPopularityIndex popularityIndex;
+    private final ObjectWriter exportWriter;
+    private final int likesExpandLimit;
 
-    public FilmService(FilmRepository filmRepository, LikeRepository likeRepository, GenreRepository genreRepository) {
+    public FilmService(FilmRepository filmRepository, LikeRepository likeRepository, GenreRepository genreRepository,
+                       UserRepository userRepository, FilmDtoCache filmCache, LikeWriteBehindQueue likeQueue,
+                       FilmRecommender recommender, TrendingFilmsIndex trending, FilmPopularityIndex popularityIndex,
+                       ObjectMapper objectMapper,
+                       @Value("${filmorate.films.likes.expand-limit:100}") int likesExpandLimit) {
         this.filmRepository = filmRepository;
         this.likeRepository = likeRepository;
         this.genreRepository = genreRepository;
+        this.userRepository = userRepository;
+        this.filmCache = filmCache;
+        this.likeQueue = likeQueue;
+        this.recommender = recommender;
+        this.trending = trending;
+        this.popularityIndex = popularityIndex;
+        this.likesExpandLimit = likesExpandLimit;
+        this.exportWriter = objectMapper.writerFor(FilmDto.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
     }
 
-    public List<FilmDto> getAllFilms() {
-        log.info("Запрос на получение всех фильмов");
-        List<Film> films = filmRepository.getAllFilms();
-        enrichFilmsWithGenres(films);
-        return films.stream()
-                .map(FilmMapper::mapToFilmDto)
-                .collect(Collectors.toList());
+    public PageDto<FilmDto> getFilms(long afterId, int limit, boolean withLikes) {
+        log.info("Запрос на получение {} фильмов после ID: {}", limit, afterId);
+        Pages.checkLimit(limit);
+        PageDto<Film> page = Pages.fromRows(filmRepository.getFilmsPage(afterId, limit + 1), limit, Film::getId);
+        enrichFilmsWithGenres(page.getItems());
+        return new PageDto<>(mapToFilmDtos(page.getItems(), withLikes), page.getNextCursor());
     }
 
-    public Optional<FilmDto> findFilmById(Long id) {
+    public void exportFilms(OutputStream outputStream) throws IOException {
+        log.info("Запрос на выгрузку всех фильмов");
+        BufferedOutputStream out = new BufferedOutputStream(outputStream);
+        try {
+            filmRepository.streamFilms(film -> {
+                try {
+                    exportWriter.writeValue(out, mapToFilmDto(film));
+                    out.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        out.flush();
+    }
+
+    // С лайками фильм читается мимо кэша: в кэше лежат карточки без лайков.
+    // Количество лайков в карточке не устаревает: лайк сбрасывает карточку из кэша
+    public Optional<FilmDto> findFilmById(Long id, boolean withLikes) {
         log.info("Запрос на получение фильма с ID: {}", id);
+        if (withLikes) {
+            return filmRepository.getFilmById(id).map(film -> {
+                enrichFilmWithGenres(film);
+                return mapToFilmDtos(List.of(film), true).get(0);
+            });
+        }
+        Optional<FilmDto> cached = filmCache.get(id);
+        if (cached.isPresent()) {
+            return cached;
+        }
+        long stamp = filmCache.stamp(id);
         Optional<Film> filmOptional = filmRepository.getFilmById(id);
         if (filmOptional.isPresent()) {
             Film film = filmOptional.get();
             enrichFilmWithGenres(film);
-            return Optional.of(FilmMapper.mapToFilmDto(film));
+            FilmDto filmDto = mapToFilmDto(film);
+            filmCache.put(filmDto, stamp);
+            return Optional.of(filmDto);
         }
         return Optional.empty();
     }
 
+    @Transactional
     public FilmDto addNewFilm(Film film) {
         log.info("Запрос на добавление нового фильма: {}", film);
         checkReleaseDate(film);
-        Film createdFilm = filmRepository.addNewFilm(film);
-        enrichFilmWithGenres(createdFilm);
-        return FilmMapper.mapToFilmDto(createdFilm);
+        return FilmMapper.mapToFilmDto(filmRepository.addNewFilm(film));
     }
 
+    @Transactional
     public FilmDto updateFilm(Film film) {
         log.info("Запрос на обновление фильма с ID: {}", film.getId());
         checkReleaseDate(film);
         Film updatedFilm = filmRepository.updateFilm(film);
-        enrichFilmWithGenres(updatedFilm);
+        filmCache.invalidate(updatedFilm.getId());
         return FilmMapper.mapToFilmDto(updatedFilm);
     }
 
     public void addLikeToFilm(Long filmId, Long userId) {
         log.info("Запрос на добавление лайка фильму с ID: {} от пользователя с ID: {}", filmId, userId);
+        if (likeQueue.isEnabled()) {
+            likeQueue.like(filmId, userId);
+            return;
+        }
         likeRepository.addLike(filmId, userId);
+        filmCache.invalidate(filmId);
     }
 
     public void removeLikeFromFilm(Long filmId, Long userId) {
         log.info("Запрос на удаление лайка фильму с ID: {} от пользователя с ID: {}", filmId, userId);
+        if (likeQueue.isEnabled()) {
+            likeQueue.unlike(filmId, userId);
+            return;
+        }
         likeRepository.deleteLike(filmId, userId);
+        filmCache.invalidate(filmId);
     }
 
-    public List<FilmDto> getPopularFilms(int count) {
-        log.info("Запрос на получение {} популярных фильмов", count);
-        List<Film> films = filmRepository.getPopularFilms(count);
+    public PageDto<FilmDto> getLikedFilms(Long userId, long afterId, int limit) {
+        log.info("Запрос на получение {} фильмов с лайком пользователя с ID: {} после ID: {}", limit, userId, afterId);
+        Pages.checkLimit(limit);
+        if (userRepository.getUserById(userId).isEmpty()) {
+            throw new NotFoundException(String.format("Пользователь с id=%d не найден", userId));
+        }
+        List<Long> filmIds = Arrays.stream(likeRepository.getLikedFilmIds(userId, afterId, limit + 1))
+                .boxed()
+                .collect(Collectors.toList());
+        PageDto<Long> page = Pages.fromRows(filmIds, limit, Long::longValue);
+        List<Film> films = filmRepository.getFilmsByIds(page.getItems());
         enrichFilmsWithGenres(films);
-        return films.stream().map(FilmMapper::mapToFilmDto).collect(Collectors.toList());
+        return new PageDto<>(mapToFilmDtos(films, false), page.getNextCursor());
     }
 
-    private void checkReleaseDate(Film film) {
+    public List<FilmDto> getRecommendations(Long userId, int limit) {
+        log.info("Запрос на получение {} рекомендаций фильмов для пользователя с ID: {}", limit, userId);
+        if (limit < 1 || limit > recommender.getMaxResults()) {
+            throw new ValidationException("Количество рекомендаций должно быть от 1 до " + recommender.getMaxResults());
+        }
+        if (userRepository.getUserById(userId).isEmpty()) {
+            throw new NotFoundException(String.format("Пользователь с id=%d не найден", userId));
+        }
+        List<Long> filmIds = Arrays.stream(recommender.recommend(userId, limit))
+                .boxed()
+                .collect(Collectors.toList());
+        List<Film> films = filmRepository.getFilmsByIds(filmIds);
+        enrichFilmsWithGenres(films);
+        return mapToFilmDtos(films, false);
+    }
+
+    public List<FilmDto> getPopularFilms(int count, Long genreId, Integer year, boolean withLikes) {
+        log.info("Запрос на получение {} популярных фильмов, жанр: {}, год: {}", count, genreId, year);
+        checkTopCount(count);
+        List<Film> films = filmRepository.getPopularFilms(count, genreId, year);
+        enrichFilmsWithGenres(films);
+        return mapToFilmDtos(films, withLikes);
+    }
+
+    public List<FilmDto> getTrendingFilms(String windowCode, int count, boolean withLikes) {
+        log.info("Запрос на получение {} фильмов в тренде за {}", count, windowCode);
+        checkTopCount(count);
+        TrendingWindow window = TrendingWindow.fromCode(windowCode).orElseThrow(() -> new ValidationException(
+                "Окно трендов должно быть одним из: " + Arrays.stream(TrendingWindow.values())
+                        .map(TrendingWindow::getCode)
+                        .collect(Collectors.joining(", "))
+        ));
+        List<Film> films = filmRepository.getFilmsByIds(trending.getTopFilmIds(window, count));
+        enrichFilmsWithGenres(films);
+        return mapToFilmDtos(films, withLikes);
+    }
+
+    private static void checkTopCount(int count) {
+        if (count < 1 || count > MAX_TOP_FILMS) {
+            throw new ValidationException("Количество фильмов должно быть от 1 до " + MAX_TOP_FILMS);
+        }
+    }
+
+    static void checkReleaseDate(Film film) {
         if (film.getReleaseDate().isBefore(EARLIEST_RELEASE_DATE)) {
             throw new ValidationException("Дата выхода не может быть раньше " +
                     EARLIEST_RELEASE_DATE + " - даты выхода первого в истории фильма");
@@ -101,4 +235,27 @@ public class FilmService {
         );
         films.forEach(film -> film.setGenres(genresByFilm.getOrDefault(film.getId(), new LinkedHashSet<>())));
     }
+
+    // Количество лайков берется из индекса популярности. Сами лайки загружаются только с expand=likes,
+    // одним запросом на всю страницу и не больше likesExpandLimit на фильм
+    private List<FilmDto> mapToFilmDtos(List<Film> films, boolean withLikes) {
+        Map<Long, Set<Like>> likesByFilm = withLikes
+                ? likeRepository.findLikesForFilms(films.stream().map(Film::getId).collect(Collectors.toList()),
+                        likesExpandLimit)
+                : Collections.emptyMap();
+        return films.stream()
+                .map(film -> {
+                    if (withLikes) {
+                        film.setLikes(likesByFilm.getOrDefault(film.getId(), new LinkedHashSet<>()));
+                    }
+                    return mapToFilmDto(film);
+                })
+                .collect(Collectors.toList());
+    }
+
+    private FilmDto mapToFilmDto(Film film) {
+        FilmDto dto = FilmMapper.mapToFilmDto(film);
+        dto.setLikeCount(popularityIndex.getLikeCount(film.getId()));
+        return dto;
+    }
 }
@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.LikeRepository;
+import ru.yandex.practicum.filmorate.storage.index.FilmPopularityIndex;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LikeCountReconciliationJob {
+    private final LikeRepository likeRepository;
+    private final FilmPopularityIndex popularityIndex;
+
+    @Scheduled(
+            initialDelayString = "${filmorate.likes.reconcile-interval:PT1H}",
+            fixedDelayString = "${filmorate.likes.reconcile-interval:PT1H}"
+    )
+    public void reconcile() {
+        int repaired = likeRepository.reconcileLikeCounts();
+        if (repaired > 0) {
+            log.warn("Исправлены счетчики лайков у {} фильмов", repaired);
+            popularityIndex.reload();
+        }
+    }
+}
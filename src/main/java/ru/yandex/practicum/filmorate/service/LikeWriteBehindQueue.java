@@ -0,0 +1,275 @@
+package ru.yandex.practicum.filmorate.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ServiceUnavailableException;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.storage.LikeRepository;
+import ru.yandex.practicum.filmorate.storage.UserRepository;
+import ru.yandex.practicum.filmorate.storage.index.FilmPopularityIndex;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Отложенная запись лайков (включается свойством {@code filmorate.likes.write-behind.enabled}).
+ * Лайки и их снятия складываются в ограниченную очередь, где для каждой пары фильм-пользователь остается
+ * только последняя операция: лайк, снятый до записи, так и не попадет в базу. Фоновый поток пишет очередь
+ * пакетами JDBC; при переполнении запрос ждет освобождения места, а при остановке приложения очередь
+ * дописывается полностью.
+ */
+@Slf4j
+@Component
+public class LikeWriteBehindQueue implements MeterBinder {
+    private final LikeRepository likeRepository;
+    private final UserRepository userRepository;
+    private final FilmPopularityIndex popularityIndex;
+    private final FilmDtoCache filmCache;
+    private final boolean enabled;
+    private final int capacity;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final long offerTimeoutNanos;
+
+    private final Map<Pair, Boolean> pending = new LinkedHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition batchReady = lock.newCondition();
+    private final LongAdder flushedLikes = new LongAdder();
+    private final LongAdder skippedLikes = new LongAdder();
+    private final LongAdder failedLikes = new LongAdder();
+    private final LongAdder rejectedLikes = new LongAdder();
+    private volatile Timer flushTimer;
+    private volatile boolean running;
+    private Thread flusher;
+
+    public LikeWriteBehindQueue(LikeRepository likeRepository, UserRepository userRepository,
+                                FilmPopularityIndex popularityIndex, FilmDtoCache filmCache,
+                                @Value("${filmorate.likes.write-behind.enabled:false}") boolean enabled,
+                                @Value("${filmorate.likes.write-behind.capacity:100000}") int capacity,
+                                @Value("${filmorate.likes.write-behind.batch-size:1000}") int batchSize,
+                                @Value("${filmorate.likes.write-behind.flush-interval:200ms}") Duration flushInterval,
+                                @Value("${filmorate.likes.write-behind.offer-timeout:1s}") Duration offerTimeout) {
+        this.likeRepository = likeRepository;
+        this.userRepository = userRepository;
+        this.popularityIndex = popularityIndex;
+        this.filmCache = filmCache;
+        this.enabled = enabled;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.offerTimeoutNanos = offerTimeout.toNanos();
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        flusher = new Thread(this::runFlusher, "likes-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("Отложенная запись лайков включена: емкость очереди {}, размер пакета {}", capacity, batchSize);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void like(Long filmId, Long userId) {
+        offer(filmId, userId, true);
+    }
+
+    public void unlike(Long filmId, Long userId) {
+        offer(filmId, userId, false);
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Фильм и пользователь проверяются по индексам в памяти до постановки в очередь:
+    // после нее сообщить клиенту об ошибке уже нельзя
+    private void offer(Long filmId, Long userId, boolean liked) {
+        if (!popularityIndex.contains(filmId)) {
+            throw new NotFoundException(String.format("Фильм id: %d отсутствует", filmId));
+        }
+        if (!userRepository.exists(userId)) {
+            throw new NotFoundException(String.format("Пользователь с id=%d не найден", userId));
+        }
+        Pair pair = new Pair(filmId, userId);
+        lock.lock();
+        try {
+            if (!running) {
+                throw new ServiceUnavailableException("Запись лайков остановлена");
+            }
+            long remainingNanos = offerTimeoutNanos;
+            while (!pending.containsKey(pair) && pending.size() >= capacity) {
+                if (remainingNanos <= 0) {
+                    rejectedLikes.increment();
+                    throw new ServiceUnavailableException("Очередь записи лайков переполнена, повторите запрос позже");
+                }
+                remainingNanos = notFull.awaitNanos(remainingNanos);
+            }
+            pending.remove(pair);
+            pending.put(pair, liked);
+            if (pending.size() >= batchSize) {
+                batchReady.signal();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Запрос прерван во время ожидания очереди записи лайков");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void runFlusher() {
+        while (running) {
+            try {
+                awaitBatch();
+                flush(drain());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Ошибка фоновой записи лайков: ", e);
+            }
+        }
+    }
+
+    private void awaitBatch() throws InterruptedException {
+        lock.lock();
+        try {
+            long remainingNanos = flushIntervalNanos;
+            while (running && pending.size() < batchSize && remainingNanos > 0) {
+                remainingNanos = batchReady.awaitNanos(remainingNanos);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Map<Pair, Boolean> drain() {
+        Map<Pair, Boolean> batch = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            Iterator<Map.Entry<Pair, Boolean>> iterator = pending.entrySet().iterator();
+            while (batch.size() < batchSize && iterator.hasNext()) {
+                Map.Entry<Pair, Boolean> entry = iterator.next();
+                batch.put(entry.getKey(), entry.getValue());
+                iterator.remove();
+            }
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        return batch;
+    }
+
+    private void flush(Map<Pair, Boolean> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long startedAt = System.nanoTime();
+        try {
+            apply(batch);
+        } catch (DataAccessException e) {
+            log.warn("Не удалось записать пакет из {} лайков, запись по одному: {}", batch.size(), e.getMessage());
+            batch.forEach((pair, liked) -> {
+                try {
+                    apply(Map.of(pair, liked));
+                } catch (DataAccessException ex) {
+                    failedLikes.increment();
+                    log.error("Не удалось записать лайк фильму с ID: {} от пользователя с ID: {}: ",
+                            pair.filmId(), pair.userId(), ex);
+                }
+            });
+        }
+        Timer timer = flushTimer;
+        if (timer != null) {
+            timer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void apply(Map<Pair, Boolean> batch) {
+        List<Like> added = new ArrayList<>();
+        List<Like> removed = new ArrayList<>();
+        batch.forEach((pair, liked) -> (liked ? added : removed).add(new Like(null, pair.filmId(), pair.userId())));
+        LikeRepository.AppliedLikeChanges changes = likeRepository.applyLikeChanges(added, removed);
+        changes.deltasByFilm().keySet().forEach(filmCache::invalidate);
+        flushedLikes.add(changes.applied());
+        skippedLikes.add(batch.size() - changes.applied());
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        lock.lock();
+        try {
+            running = false;
+            batchReady.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        flusher.join();
+        Map<Pair, Boolean> batch;
+        while (!(batch = drain()).isEmpty()) {
+            flush(batch);
+        }
+        log.info("Очередь отложенной записи лайков дописана перед остановкой");
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("likes.write_behind.queue.depth", this, LikeWriteBehindQueue::size)
+                .description("Число операций с лайками, ожидающих записи")
+                .register(registry);
+        FunctionCounter.builder("likes.write_behind.operations", flushedLikes, LongAdder::sum)
+                .tag("result", "flushed")
+                .register(registry);
+        FunctionCounter.builder("likes.write_behind.operations", skippedLikes, LongAdder::sum)
+                .tag("result", "skipped")
+                .description("Повторные лайки и снятия отсутствующих, не изменившие таблицу")
+                .register(registry);
+        FunctionCounter.builder("likes.write_behind.operations", failedLikes, LongAdder::sum)
+                .tag("result", "failed")
+                .register(registry);
+        FunctionCounter.builder("likes.write_behind.operations", rejectedLikes, LongAdder::sum)
+                .tag("result", "rejected")
+                .register(registry);
+        flushTimer = Timer.builder("likes.write_behind.flush")
+                .description("Время записи одного пакета лайков")
+                .register(registry);
+    }
+
+    private record Pair(long filmId, long userId) {
+    }
+}
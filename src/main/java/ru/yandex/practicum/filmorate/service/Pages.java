@@ -0,0 +1,29 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import ru.yandex.practicum.filmorate.dto.PageDto;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+class Pages {
+    static final int MAX_PAGE_SIZE = 1000;
+
+    static void checkLimit(int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+    }
+
+    // Строки читаются с запасом в одну: лишняя строка значит, что есть следующая страница
+    static <T> PageDto<T> fromRows(List<T> rows, int limit, ToLongFunction<T> idOf) {
+        if (rows.size() <= limit) {
+            return new PageDto<>(rows, null);
+        }
+        List<T> items = rows.subList(0, limit);
+        return new PageDto<>(items, idOf.applyAsLong(items.get(limit - 1)));
+    }
+}
@@ -1,7 +1,10 @@
 package ru.yandex.practicum.filmorate.service;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.dto.PageDto;
 import ru.yandex.practicum.filmorate.dto.UserDto;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
@@ -16,20 +19,27 @@ import java.util.stream.Collectors;
 @Slf4j
 @Service
 public class UserService {
+    private static final int MAX_SUGGESTIONS = 100;
+
     private final UserRepository userRepository;
     private final FriendshipRepository friendshipRepository;
+    private final int suggestionsFanOutCap;
 
-    public UserService(UserRepository userRepository, FriendshipRepository friendshipRepository) {
+    public UserService(UserRepository userRepository, FriendshipRepository friendshipRepository,
+                       @Value("${filmorate.friends.suggestions.fan-out-cap:1000}") int suggestionsFanOutCap) {
         this.userRepository = userRepository;
         this.friendshipRepository = friendshipRepository;
+        this.suggestionsFanOutCap = suggestionsFanOutCap;
     }
 
-    public List<UserDto> getAllUsers() {
-        log.info("Запрос на получение всех пользователей");
-        return userRepository.getAllUsers()
-                .stream()
+    public PageDto<UserDto> getUsers(long afterId, int limit) {
+        log.info("Запрос на получение {} пользователей после ID: {}", limit, afterId);
+        Pages.checkLimit(limit);
+        PageDto<User> page = Pages.fromRows(userRepository.getUsersPage(afterId, limit + 1), limit, User::getId);
+        List<UserDto> items = page.getItems().stream()
                 .map(UserMapper::mapToUserDto)
                 .collect(Collectors.toList());
+        return new PageDto<>(items, page.getNextCursor());
     }
 
     public UserDto getUserById(Long id) {
@@ -39,6 +49,7 @@ public class UserService {
                 .orElseThrow(() -> new NotFoundException(String.format("Пользователь с id=%d не найден", id)));
     }
 
+    @Transactional
     public UserDto addNewUser(User user) {
         log.info("Запрос на добавление нового пользователя: {}", user);
         checkName(user);
@@ -46,6 +57,7 @@ public class UserService {
         return UserMapper.mapToUserDto(createdUser);
     }
 
+    @Transactional
     public UserDto updateUser(User newUser) {
         log.info("Запрос на обновление пользователя с ID: {}", newUser.getId());
         if (newUser.getId() == null) {
@@ -70,11 +82,13 @@ public class UserService {
                 .collect(Collectors.toList());
     }
 
+    @Transactional
     public void addFriend(Long senderId, Long receiverId) {
         log.info("Запрос на добавление друга с ID: {} пользователю с ID: {}", receiverId, senderId);
         friendshipRepository.addFriend(senderId, receiverId);
     }
 
+    @Transactional
     public void deleteFriend(Long senderId, Long receiverId) {
         log.info("Запрос на удаление друга с ID: {} у пользователя с ID: {}", receiverId, senderId);
         friendshipRepository.deleteFriend(senderId, receiverId);
@@ -88,7 +102,21 @@ public class UserService {
                 .collect(Collectors.toList());
     }
 
-    private void checkName(User user) {
+    public List<UserDto> getFriendSuggestions(Long userId, int limit) {
+        log.info("Запрос на получение {} рекомендаций друзей для пользователя с ID: {}", limit, userId);
+        if (limit < 1 || limit > MAX_SUGGESTIONS) {
+            throw new ValidationException("Количество рекомендаций должно быть от 1 до " + MAX_SUGGESTIONS);
+        }
+        if (userRepository.getUserById(userId).isEmpty()) {
+            throw new NotFoundException(String.format("Пользователь с id=%d не найден", userId));
+        }
+        return userRepository.getSuggestedFriends(userId, limit, suggestionsFanOutCap)
+                .stream()
+                .map(UserMapper::mapToUserDto)
+                .collect(Collectors.toList());
+    }
+
+    static void checkName(User user) {
         if (user.getName() == null || user.getName().isBlank()) {
             user.setName(user.getLogin());
         }
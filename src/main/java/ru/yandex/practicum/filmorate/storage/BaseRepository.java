@@ -5,15 +5,24 @@ import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import ru.yandex.practicum.filmorate.exception.InternalServerException;
 
 import java.sql.PreparedStatement;
-import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @RequiredArgsConstructor
 public class BaseRepository<T> {
+    protected static final int MULTI_GET_CHUNK_SIZE = 500;
+    private static final String[] GENERATED_KEY_COLUMNS = {"id"};
     private final String serverError = "Не удалось сохранить данные";
     protected final JdbcTemplate jdbc;
     protected final RowMapper<T> mapper;
@@ -32,15 +41,55 @@ public class BaseRepository<T> {
         return jdbc.query(query, mapper, params);
     }
 
+    protected List<T> findByIds(String query, Collection<?> ids) {
+        return findByIds(query, ids, mapper, false);
+    }
+
+    // Запрос должен содержать условие "= ANY(?)": идентификаторы передаются массивом, поэтому текст запроса
+    // не зависит от их количества. Параллельно части читаются только вне транзакции, иначе потоки
+    // не увидят незафиксированные изменения, и не в методах только для чтения: у рабочих потоков нет
+    // признака только для чтения, и их части читались бы из основной базы, а остальные — из реплики.
+    // Остальные параметры запроса передаются после массива
+    protected <R> List<R> findByIds(String query, Collection<?> ids, RowMapper<R> rowMapper, boolean parallel,
+                                    Object... params) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Object[]> chunks = new ArrayList<>();
+        Iterator<?> iterator = ids.iterator();
+        for (int remaining = ids.size(); remaining > 0; remaining -= MULTI_GET_CHUNK_SIZE) {
+            Object[] chunk = new Object[Math.min(MULTI_GET_CHUNK_SIZE, remaining)];
+            for (int idx = 0; idx < chunk.length; idx++) {
+                chunk[idx] = iterator.next();
+            }
+            chunks.add(chunk);
+        }
+        Stream<Object[]> stream = parallel && chunks.size() > 1
+                && !TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                ? chunks.parallelStream()
+                : chunks.stream();
+        return stream
+                .flatMap(chunk -> jdbc.query(query, rowMapper, withArray(chunk, params)).stream())
+                .collect(Collectors.toList());
+    }
+
+    private static Object[] withArray(Object[] chunk, Object[] params) {
+        Object[] args = new Object[params.length + 1];
+        args[0] = chunk;
+        System.arraycopy(params, 0, args, 1, params.length);
+        return args;
+    }
+
     public void delete(String query, Object... params) {
         jdbc.update(query, params);
     }
 
+    // Запрашивается только ключ id, как и в пакетных вставках: H2 не возвращает остальные столбцы
     protected long insert(String query, Object... params) {
         GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
         jdbc.update(connection -> {
-            PreparedStatement ps = connection
-                    .prepareStatement(query, Statement.RETURN_GENERATED_KEYS);
+            PreparedStatement ps = connection.prepareStatement(query, GENERATED_KEY_COLUMNS);
             for (int idx = 0; idx < params.length; idx++) {
                 ps.setObject(idx + 1, params[idx]);
             }
@@ -61,4 +110,19 @@ public class BaseRepository<T> {
             throw new InternalServerException(serverError);
         }
     }
+
+    // Индексы в памяти меняются сразу после записи, а при откате транзакции возвращаются обратно
+    protected void undoOnRollback(Runnable undo) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    undo.run();
+                }
+            }
+        });
+    }
 }
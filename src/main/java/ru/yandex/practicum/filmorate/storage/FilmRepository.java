@@ -1,26 +1,62 @@
 package ru.yandex.practicum.filmorate.storage;
 
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.storage.index.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmPopularityIndex.FilmAttributes;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Repository
 public class FilmRepository extends BaseRepository<Film> {
-    private final String notFound = "Фильм не найден после создания";
+    private static final int EXPORT_FETCH_SIZE = 500;
     private static final String FIND_ALL_QUERY =
-            "SELECT f.*, r.name AS rating_name " +
+            "SELECT f.* " +
+                    "FROM films f ";
+    private static final String STREAM_ALL_QUERY =
+            "SELECT f.* " +
                     "FROM films f " +
-                    "LEFT JOIN ratings r ON f.rating_id = r.id ";
+                    "ORDER BY f.id";
+    private static final String STREAM_ALL_GENRES_QUERY =
+            "SELECT film_id, genre_id " +
+                    "FROM film_genres " +
+                    "ORDER BY film_id, genre_id";
+    private static final String FIND_PAGE_QUERY =
+            "SELECT f.* " +
+                    "FROM films f " +
+                    "WHERE f.id > ? " +
+                    "ORDER BY f.id " +
+                    "LIMIT ?";
     private static final String FIND_BY_ID_QUERY =
-            "SELECT f.*, r.name AS rating_name " +
+            "SELECT f.* " +
                     "FROM films f " +
-                    "LEFT JOIN ratings r ON f.rating_id = r.id " +
                     "WHERE f.id = ?";
     private static final String INSERT_QUERY =
             "INSERT INTO films(name, description, release_date, duration, rating_id) " +
@@ -29,46 +65,84 @@ public class FilmRepository extends BaseRepository<Film> {
             "UPDATE films " +
                     "SET name = ?, description = ?, release_date = ?, duration = ?, rating_id = ? " +
                     "WHERE id = ?";
-    private static final String DELETE_GENRES_BY_FILM_ID =
-            "DELETE FROM film_genres " +
+    private static final String FIND_GENRE_IDS_BY_FILM_ID_QUERY =
+            "SELECT genre_id " +
+                    "FROM film_genres " +
                     "WHERE film_id = ?";
+    private static final String DELETE_FILM_GENRE_QUERY =
+            "DELETE FROM film_genres " +
+                    "WHERE film_id = ? AND genre_id = ?";
     private static final String INSERT_IN_FILM_GENRES_QUERY =
             "INSERT INTO film_genres(film_id, genre_id) " +
                     "VALUES (?, ?)";
-    private static final String CHECK_RATING_QUERY =
-            "SELECT COUNT(*) " +
-                    "FROM ratings " +
-                    "WHERE id = ?";
-    private static final String CHECK_GENRE_QUERY =
-            "SELECT COUNT(*) " +
-                    "FROM genres " +
-                    "WHERE id = ?";
     private static final String CHECK_ID_QUERY =
             "SELECT COUNT(*) " +
                     "FROM films " +
                     "WHERE id = ?";
-    private static final String FIND_POPULAR_FILMS_QUERY =
-            "SELECT f.*, r.name AS rating_name, COUNT(l.user_id) AS like_count " +
+    private static final String FIND_BY_IDS_QUERY =
+            "SELECT f.* " +
                     "FROM films f " +
-                    "LEFT JOIN likes l ON f.id = l.film_id " +
-                    "LEFT JOIN ratings r ON f.rating_id = r.id " +
-                    "GROUP BY f.id, r.name " +
-                    "ORDER BY like_count DESC " +
-                    "LIMIT ?";
+                    "WHERE f.id = ANY(?)";
 
+    private final FilmPopularityIndex popularityIndex;
+    private final ReferenceDataRegistry referenceData;
 
-    public FilmRepository(JdbcTemplate jdbc, RowMapper<Film> mapper) {
+    public FilmRepository(JdbcTemplate jdbc, RowMapper<Film> mapper, FilmPopularityIndex popularityIndex,
+                          ReferenceDataRegistry referenceData) {
         super(jdbc, mapper, Film.class);
+        this.popularityIndex = popularityIndex;
+        this.referenceData = referenceData;
     }
 
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
     public List<Film> getAllFilms() {
         return findMany(FIND_ALL_QUERY);
     }
 
+    // Фильмы и их жанры читаются двумя курсорами, упорядоченными по id фильма, и склеиваются на лету,
+    // поэтому в памяти одновременно находится только один фильм
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public void streamFilms(Consumer<Film> consumer) {
+        jdbc.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement filmsStatement = connection.prepareStatement(STREAM_ALL_QUERY);
+                 PreparedStatement genresStatement = connection.prepareStatement(STREAM_ALL_GENRES_QUERY)) {
+                filmsStatement.setFetchSize(EXPORT_FETCH_SIZE);
+                genresStatement.setFetchSize(EXPORT_FETCH_SIZE);
+                try (ResultSet films = filmsStatement.executeQuery();
+                     ResultSet genres = genresStatement.executeQuery()) {
+                    boolean hasGenre = genres.next();
+                    int rowNum = 0;
+                    while (films.next()) {
+                        Film film = mapper.mapRow(films, rowNum++);
+                        long filmId = film.getId();
+                        while (hasGenre && genres.getLong("film_id") < filmId) {
+                            hasGenre = genres.next();
+                        }
+                        Set<Genre> filmGenres = new LinkedHashSet<>();
+                        while (hasGenre && genres.getLong("film_id") == filmId) {
+                            referenceData.getGenre(genres.getLong("genre_id")).ifPresent(filmGenres::add);
+                            hasGenre = genres.next();
+                        }
+                        film.setGenres(filmGenres);
+                        consumer.accept(film);
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public List<Film> getFilmsPage(long afterId, int limit) {
+        return findMany(FIND_PAGE_QUERY, afterId, limit);
+    }
+
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
     public Optional<Film> getFilmById(Long id) {
         return findOne(FIND_BY_ID_QUERY, id);
     }
 
+    @Transactional
     public Film addNewFilm(Film film) {
         checkRating(film);
         checkGenre(film);
@@ -81,10 +155,55 @@ public class FilmRepository extends BaseRepository<Film> {
                 film.getMpaRating().getId()
         );
         film.setId(filmId);
-        saveGenres(film);
-        return getFilmById(filmId).orElseThrow(() -> new NotFoundException(notFound));
+        insertGenres(filmId, genreIds(film));
+        popularityIndex.addFilm(filmId, attributes(film));
+        undoOnRollback(() -> popularityIndex.removeFilm(filmId));
+        return assemble(film);
     }
 
+    // Пакетная вставка для массовой загрузки: фильмы уже проверены вызывающим кодом
+    @Transactional
+    public List<Film> addNewFilms(List<Film> films) {
+        if (films.isEmpty()) {
+            return films;
+        }
+        GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbc.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_QUERY, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int idx) throws SQLException {
+                        Film film = films.get(idx);
+                        ps.setString(1, film.getName());
+                        ps.setString(2, film.getDescription());
+                        ps.setObject(3, film.getReleaseDate());
+                        ps.setInt(4, film.getDuration());
+                        ps.setLong(5, film.getMpaRating().getId());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return films.size();
+                    }
+                },
+                keyHolder
+        );
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        List<Object[]> filmGenres = new ArrayList<>();
+        for (int idx = 0; idx < films.size(); idx++) {
+            Film film = films.get(idx);
+            film.setId(((Number) keys.get(idx).values().iterator().next()).longValue());
+            genreIds(film).forEach(genreId -> filmGenres.add(new Object[]{film.getId(), genreId}));
+        }
+        if (!filmGenres.isEmpty()) {
+            jdbc.batchUpdate(INSERT_IN_FILM_GENRES_QUERY, filmGenres);
+        }
+        films.forEach(film -> popularityIndex.addFilm(film.getId(), attributes(film)));
+        undoOnRollback(() -> films.forEach(film -> popularityIndex.removeFilm(film.getId())));
+        return films;
+    }
+
+    @Transactional
     public Film updateFilm(Film film) {
         checkId(film);
         checkRating(film);
@@ -98,27 +217,95 @@ public class FilmRepository extends BaseRepository<Film> {
                 film.getMpaRating().getId(),
                 film.getId()
         );
-        jdbc.update(DELETE_GENRES_BY_FILM_ID, film.getId());
         saveGenres(film);
-        return getFilmById(film.getId()).orElseThrow(() -> new NotFoundException(notFound));
+        FilmAttributes previous = popularityIndex.updateFilm(film.getId(), attributes(film));
+        if (previous != null) {
+            undoOnRollback(() -> popularityIndex.updateFilm(film.getId(), previous));
+        }
+        return assemble(film);
     }
 
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
     public List<Film> getPopularFilms(int count) {
-        return findMany(FIND_POPULAR_FILMS_QUERY, count);
+        return getFilmsByIds(popularityIndex.getTopFilmIds(count));
+    }
+
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public List<Film> getPopularFilms(int count, Long genreId, Integer year) {
+        return getFilmsByIds(popularityIndex.getTopFilmIds(count, genreId, year));
     }
 
+    // Фильмы возвращаются в порядке переданных идентификаторов
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public List<Film> getFilmsByIds(List<Long> filmIds) {
+        if (filmIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Long, Film> filmsById = findByIds(FIND_BY_IDS_QUERY, filmIds)
+                .stream()
+                .collect(Collectors.toMap(Film::getId, Function.identity()));
+        return filmIds.stream()
+                .map(filmsById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    // Записываются только отличия от текущего набора жанров фильма
     private void saveGenres(Film film) {
-        if (film.getGenres() == null || film.getGenres().isEmpty()) {
+        Set<Long> newGenreIds = genreIds(film);
+        Set<Long> currentGenreIds = new HashSet<>(
+                jdbc.queryForList(FIND_GENRE_IDS_BY_FILM_ID_QUERY, Long.class, film.getId())
+        );
+        List<Long> removed = currentGenreIds.stream()
+                .filter(genreId -> !newGenreIds.contains(genreId))
+                .collect(Collectors.toList());
+        List<Long> added = newGenreIds.stream()
+                .filter(genreId -> !currentGenreIds.contains(genreId))
+                .collect(Collectors.toList());
+        if (!removed.isEmpty()) {
+            jdbc.batchUpdate(DELETE_FILM_GENRE_QUERY, removed, removed.size(), (ps, genreId) -> {
+                ps.setLong(1, film.getId());
+                ps.setLong(2, genreId);
+            });
+        }
+        insertGenres(film.getId(), added);
+    }
+
+    private void insertGenres(long filmId, Collection<Long> genreIds) {
+        if (genreIds.isEmpty()) {
             return;
         }
-        for (Genre genre : film.getGenres()) {
-            jdbc.update(INSERT_IN_FILM_GENRES_QUERY, film.getId(), genre.getId());
+        jdbc.batchUpdate(INSERT_IN_FILM_GENRES_QUERY, genreIds, genreIds.size(), (ps, genreId) -> {
+            ps.setLong(1, filmId);
+            ps.setLong(2, genreId);
+        });
+    }
+
+    private Set<Long> genreIds(Film film) {
+        Set<Long> genreIds = new LinkedHashSet<>();
+        if (film.getGenres() != null) {
+            film.getGenres().forEach(genre -> genreIds.add(genre.getId()));
         }
+        return genreIds;
+    }
+
+    // Записанный фильм собирается из проверенных входных данных и справочников без повторного чтения из базы.
+    // Жанры упорядочиваются по id, как при чтении
+    private Film assemble(Film film) {
+        long ratingId = film.getMpaRating().getId();
+        film.setMpaRating(referenceData.getRating(ratingId).orElseGet(() -> new MpaRating(ratingId, null)));
+        Set<Genre> genres = new LinkedHashSet<>();
+        new TreeSet<>(genreIds(film)).forEach(genreId -> referenceData.getGenre(genreId).ifPresent(genres::add));
+        film.setGenres(genres);
+        return film;
+    }
+
+    private FilmAttributes attributes(Film film) {
+        return new FilmAttributes(FilmAttributes.yearOf(film.getReleaseDate()), genreIds(film));
     }
 
     private void checkRating(Film film) {
-        Integer count = jdbc.queryForObject(CHECK_RATING_QUERY, Integer.class, film.getMpaRating().getId());
-        if (count == 0) {
+        if (!referenceData.ratingExists(film.getMpaRating().getId())) {
             throw new NotFoundException(
                     String.format("Рейтинг с id: %d отсутствует", film.getMpaRating().getId())
             );
@@ -126,11 +313,10 @@ public class FilmRepository extends BaseRepository<Film> {
     }
 
     private void checkGenre(Film film) {
-        for (Genre genre : film.getGenres()) {
-            Integer count = jdbc.queryForObject(CHECK_GENRE_QUERY, Integer.class, genre.getId());
-            if (count == 0) {
+        for (Long genreId : genreIds(film)) {
+            if (!referenceData.genreExists(genreId)) {
                 throw new NotFoundException(
-                        String.format("Жанр c id: %d отсутствует", genre.getId())
+                        String.format("Жанр c id: %d отсутствует", genreId)
                 );
             }
         }
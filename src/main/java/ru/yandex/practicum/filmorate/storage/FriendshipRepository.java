@@ -1,11 +1,15 @@
 package ru.yandex.practicum.filmorate.storage;
 
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.DuplicatedDataException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.storage.index.FriendGraphIndex;
 
 @Repository
 public class FriendshipRepository extends BaseRepository<Friendship> {
@@ -13,10 +17,6 @@ public class FriendshipRepository extends BaseRepository<Friendship> {
     private static final String INSERT_QUERY =
             "INSERT INTO friends(sender, receiver) " +
             "VALUES (?, ?)";
-    private static final String CHECK_REQUEST_QUERY =
-            "SELECT COUNT(*) " +
-            "FROM friends " +
-            "WHERE sender = ? AND receiver = ?";
     private static final String DELETE_QUERY =
             "DELETE FROM friends " +
             "WHERE sender = ? AND receiver = ?";
@@ -24,27 +24,37 @@ public class FriendshipRepository extends BaseRepository<Friendship> {
             "SELECT COUNT(*) " +
             "FROM users WHERE id = ?";
 
-    public FriendshipRepository(JdbcTemplate jdbc, RowMapper<Friendship> mapper) {
+    private final FriendGraphIndex friendGraph;
+
+    public FriendshipRepository(JdbcTemplate jdbc, RowMapper<Friendship> mapper, FriendGraphIndex friendGraph) {
         super(jdbc, mapper, Friendship.class);
+        this.friendGraph = friendGraph;
     }
 
+    // Повторная заявка и несуществующие пользователи отсекаются ограничениями таблицы friends
+    @Transactional
     public void addFriend(Long sender, Long receiver) {
-        if (!userExists(sender) || !userExists(receiver)) {
-            throw new NotFoundException(notFound);
-        }
-        Integer count = jdbc.queryForObject(CHECK_REQUEST_QUERY, Integer.class, sender, receiver);
-        if (count != null && count > 0) {
+        Friendship friendship = new Friendship(null, sender, receiver);
+        try {
+            insert(INSERT_QUERY, friendship.getSender(), friendship.getReceiver());
+        } catch (DuplicateKeyException e) {
             throw new DuplicatedDataException("Запрос на добавление в друзья уже направлен");
+        } catch (DataIntegrityViolationException e) {
+            throw new NotFoundException(notFound);
         }
-        Friendship friendship = new Friendship(null, sender, receiver);
-        insert(INSERT_QUERY, friendship.getSender(), friendship.getReceiver());
+        friendGraph.add(receiver, sender);
+        undoOnRollback(() -> friendGraph.remove(receiver, sender));
     }
 
+    @Transactional
     public void deleteFriend(Long sender, Long receiver) {
         if (!userExists(sender) || !userExists(receiver)) {
             throw new NotFoundException(notFound);
         }
         delete(DELETE_QUERY, sender, receiver);
+        if (friendGraph.remove(receiver, sender)) {
+            undoOnRollback(() -> friendGraph.add(receiver, sender));
+        }
     }
 
     private boolean userExists(Long userId) {
@@ -3,7 +3,11 @@ package ru.yandex.practicum.filmorate.storage;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.model.FilmGenre;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataRegistry;
 
 import java.util.Collections;
 import java.util.HashMap;
@@ -12,50 +16,50 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 @Repository
 public class GenreRepository extends BaseRepository<Genre> {
-    private static final String FIND_ALL_QUERY =
-            "SELECT * " +
-            "FROM genres";
-    private static final String FIND_BY_ID_QUERY =
-            "SELECT * " +
-            "FROM genres " +
-            "WHERE id = ?";
     private static final String FIND_BY_FILM_IDS_QUERY =
-            "SELECT fg.id, fg.film_id, g.id AS genre_id, g.name AS genre_name " +
-            "FROM film_genres fg " +
-            "JOIN genres g ON fg.genre_id = g.id " +
-            "WHERE fg.film_id IN (:filmIds) " +
-            "ORDER BY fg.film_id, g.id ";
+            "SELECT film_id, genre_id " +
+            "FROM film_genres " +
+            "WHERE film_id = ANY(?) " +
+            "ORDER BY film_id, genre_id";
 
-    public GenreRepository(JdbcTemplate jdbc, RowMapper<Genre> mapper) {
+    private final ReferenceDataRegistry referenceData;
+    private final RowMapper<FilmGenre> filmGenreMapper;
+
+    public GenreRepository(JdbcTemplate jdbc, RowMapper<Genre> mapper, ReferenceDataRegistry referenceData,
+                           RowMapper<FilmGenre> filmGenreMapper) {
         super(jdbc, mapper, Genre.class);
+        this.referenceData = referenceData;
+        this.filmGenreMapper = filmGenreMapper;
     }
 
     public List<Genre> getAllGenres() {
-        return findMany(FIND_ALL_QUERY);
+        return referenceData.getAllGenres();
     }
 
     public Optional<Genre> getGenreById(Long id) {
-        return findOne(FIND_BY_ID_QUERY, id);
+        return referenceData.getGenre(id);
     }
 
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
     public Map<Long, Set<Genre>> findGenresForFilms(List<Long> filmIds) {
         if (filmIds.isEmpty()) {
             return Collections.emptyMap();
         }
-        String inClause = filmIds.stream()
-                .map(String::valueOf)
-                .collect(Collectors.joining(", "));
-        String query = FIND_BY_FILM_IDS_QUERY.replace(":filmIds", inClause);
+        List<FilmGenre> filmGenres = findByIds(
+                FIND_BY_FILM_IDS_QUERY,
+                filmIds,
+                filmGenreMapper,
+                filmIds.size() > MULTI_GET_CHUNK_SIZE
+        );
         Map<Long, Set<Genre>> genresByFilm = new HashMap<>();
-        jdbc.query(query, rs -> {
-            Long filmId = rs.getLong("film_id");
-            Genre genre = new Genre(rs.getLong("genre_id"), rs.getString("genre_name"));
-            genresByFilm.computeIfAbsent(filmId, k -> new LinkedHashSet<>()).add(genre);
-        });
+        for (FilmGenre filmGenre : filmGenres) {
+            referenceData.getGenre(filmGenre.getGenreId()).ifPresent(genre ->
+                    genresByFilm.computeIfAbsent(filmGenre.getFilmId(), k -> new LinkedHashSet<>()).add(genre)
+            );
+        }
         return genresByFilm;
     }
 }
@@ -1,22 +1,38 @@
 package ru.yandex.practicum.filmorate.storage;
 
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.DuplicatedDataException;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.storage.index.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmRecommender;
+import ru.yandex.practicum.filmorate.storage.index.LikeIndex;
+import ru.yandex.practicum.filmorate.storage.index.TrendingFilmsIndex;
+import ru.yandex.practicum.filmorate.storage.index.UserLikesIndex;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Repository
 public class LikeRepository extends BaseRepository<Like> {
     private static final String INSERT_QUERY =
             "INSERT INTO likes(film_id, user_id) " +
             "VALUES (?, ?)";
-    private static final String CHECK_REQUEST_QUERY =
-            "SELECT COUNT(*) " +
-            "FROM likes " +
-            "WHERE film_id = ? AND user_id = ?";
+    private static final String INSERT_IF_ABSENT_QUERY =
+            "INSERT INTO likes(film_id, user_id) " +
+            "SELECT ?, ? " +
+            "WHERE NOT EXISTS (SELECT 1 FROM likes WHERE film_id = ? AND user_id = ?)";
     private static final String DELETE_QUERY =
             "DELETE FROM likes " +
             "WHERE film_id = ? AND user_id = ?";
@@ -24,30 +40,270 @@ public class LikeRepository extends BaseRepository<Like> {
             "SELECT * " +
             "FROM likes " +
             "WHERE film_id = ?";
+    private static final String FIND_FIRST_BY_FILM_IDS_QUERY =
+            "SELECT id, film_id, user_id " +
+            "FROM (SELECT l.*, ROW_NUMBER() OVER (PARTITION BY film_id ORDER BY id) AS rn " +
+            "      FROM likes l " +
+            "      WHERE film_id = ANY(?)) " +
+            "WHERE rn <= ?";
+    private static final String INCREMENT_LIKE_COUNT_QUERY =
+            "UPDATE films " +
+            "SET like_count = like_count + 1 " +
+            "WHERE id = ?";
+    private static final String DECREMENT_LIKE_COUNT_QUERY =
+            "UPDATE films " +
+            "SET like_count = like_count - 1 " +
+            "WHERE id = ?";
+    private static final String ADD_LIKE_COUNT_QUERY =
+            "UPDATE films " +
+            "SET like_count = like_count + ? " +
+            "WHERE id = ?";
+    private static final String RECONCILE_LIKE_COUNTS_QUERY =
+            "UPDATE films f " +
+            "SET like_count = (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.id) " +
+            "WHERE like_count <> (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.id)";
 
-    public LikeRepository(JdbcTemplate jdbc, RowMapper<Like> mapper) {
+    private final FilmPopularityIndex popularityIndex;
+    private final LikeIndex likeIndex;
+    private final UserLikesIndex userLikes;
+    private final FilmRecommender recommender;
+    private final TrendingFilmsIndex trending;
+
+    public LikeRepository(JdbcTemplate jdbc, RowMapper<Like> mapper, FilmPopularityIndex popularityIndex,
+                          LikeIndex likeIndex, UserLikesIndex userLikes, FilmRecommender recommender,
+                          TrendingFilmsIndex trending) {
         super(jdbc, mapper, Like.class);
+        this.popularityIndex = popularityIndex;
+        this.likeIndex = likeIndex;
+        this.userLikes = userLikes;
+        this.recommender = recommender;
+        this.trending = trending;
     }
 
+    // Пара атомарно занимается в множестве лайков до записи в базу: повторный лайк отсекается без обращения к базе,
+    // а блокировка части множества не держится во время запросов и не пересекается с блокировками строк.
+    // Несуществующие фильм или пользователь, а также расхождение с таблицей ловят ограничения таблицы likes
+    @Transactional
     public void addLike(Long filmId, Long userId) {
-        Integer count = jdbc.queryForObject(CHECK_REQUEST_QUERY, Integer.class, filmId, userId);
-        if (count != 0) {
-            throw new DuplicatedDataException(String.format("Фильму с id = %d, уже поставлен лайк пользователем " +
-                    "с id = %d", filmId, userId));
+        if (!LikeIndex.fits(filmId, userId)) {
+            throw notFound(filmId, userId);
+        }
+        if (!likeIndex.add(filmId, userId)) {
+            throw alreadyLiked(filmId, userId);
+        }
+        boolean written = false;
+        try {
+            insert(INSERT_QUERY, filmId, userId);
+            update(INCREMENT_LIKE_COUNT_QUERY, filmId);
+            written = true;
+        } catch (DuplicateKeyException e) {
+            throw alreadyLiked(filmId, userId);
+        } catch (DataIntegrityViolationException e) {
+            throw notFound(filmId, userId);
+        } finally {
+            if (!written) {
+                likeIndex.remove(filmId, userId);
+            }
         }
-        insert(INSERT_QUERY, filmId, userId);
+        indexClaimedLike(filmId, userId);
+        popularityIndex.increment(filmId);
     }
 
+    @Transactional
     public void deleteLike(Long filmId, Long userId) {
-        Integer count = jdbc.queryForObject(CHECK_REQUEST_QUERY, Integer.class, filmId, userId);
-        if (count == 0) {
-            throw new DuplicatedDataException(String.format("Фильму с id = %d, еще не поставлен поставлен лайк " +
-                    "пользователем с id = %d", filmId, userId));
+        if (!likeIndex.remove(filmId, userId)) {
+            throw notLiked(filmId, userId);
         }
-        delete(DELETE_QUERY, filmId, userId);
+        boolean written = false;
+        try {
+            if (jdbc.update(DELETE_QUERY, filmId, userId) == 0) {
+                throw notLiked(filmId, userId);
+            }
+            update(DECREMENT_LIKE_COUNT_QUERY, filmId);
+            written = true;
+        } finally {
+            if (!written) {
+                likeIndex.add(filmId, userId);
+            }
+        }
+        unindexClaimedLike(filmId, userId);
+        popularityIndex.decrement(filmId);
+    }
+
+    public boolean isLiked(Long filmId, Long userId) {
+        return likeIndex.contains(filmId, userId);
+    }
+
+    public long[] getLikedFilmIds(Long userId, long afterFilmId, int limit) {
+        return userLikes.getLikedFilmIds(userId, afterFilmId, limit);
+    }
+
+    // Пакетная вставка для массовой загрузки: существование фильмов и пользователей проверяет вызывающий код.
+    // Пары занимаются в множестве лайков, как и при одиночном лайке, поэтому уже поставленные лайки и повторы
+    // пропускаются, а одновременный одиночный лайк той же пары не обрушивает пакет на ограничении таблицы.
+    // Возвращает записанные лайки в исходном порядке
+    @Transactional
+    public List<Like> addLikes(List<Like> likes) {
+        List<Like> claimed = likes.stream()
+                .filter(like -> LikeIndex.fits(like.getFilmId(), like.getUserId())
+                        && likeIndex.add(like.getFilmId(), like.getUserId()))
+                .collect(Collectors.toList());
+        if (claimed.isEmpty()) {
+            return claimed;
+        }
+        Map<Long, Long> likesByFilm = claimed.stream()
+                .collect(Collectors.groupingBy(Like::getFilmId, Collectors.counting()));
+        boolean written = false;
+        try {
+            jdbc.batchUpdate(INSERT_QUERY, claimed, claimed.size(), (ps, like) -> {
+                ps.setLong(1, like.getFilmId());
+                ps.setLong(2, like.getUserId());
+            });
+            jdbc.batchUpdate(ADD_LIKE_COUNT_QUERY, likesByFilm.entrySet().stream()
+                    .map(entry -> new Object[]{entry.getValue(), entry.getKey()})
+                    .collect(Collectors.toList()));
+            written = true;
+        } finally {
+            if (!written) {
+                claimed.forEach(like -> likeIndex.remove(like.getFilmId(), like.getUserId()));
+            }
+        }
+        claimed.forEach(like -> indexClaimedLike(like.getFilmId(), like.getUserId()));
+        likesByFilm.forEach(popularityIndex::add);
+        return claimed;
+    }
+
+    // Применяет накопленные отложенной записью изменения: повторные лайки и удаление отсутствующих пропускаются,
+    // а счетчики меняются только на фактически записанные строки
+    @Transactional
+    public AppliedLikeChanges applyLikeChanges(List<Like> added, List<Like> removed) {
+        Map<Long, Long> likesByFilm = new HashMap<>();
+        int applied = 0;
+        if (!added.isEmpty()) {
+            int[][] counts = jdbc.batchUpdate(INSERT_IF_ABSENT_QUERY, added, added.size(), (ps, like) -> {
+                ps.setLong(1, like.getFilmId());
+                ps.setLong(2, like.getUserId());
+                ps.setLong(3, like.getFilmId());
+                ps.setLong(4, like.getUserId());
+            });
+            List<Like> inserted = countApplied(added, counts, 1, likesByFilm);
+            inserted.forEach(like -> indexLike(like.getFilmId(), like.getUserId()));
+            applied += inserted.size();
+        }
+        if (!removed.isEmpty()) {
+            int[][] counts = jdbc.batchUpdate(DELETE_QUERY, removed, removed.size(), (ps, like) -> {
+                ps.setLong(1, like.getFilmId());
+                ps.setLong(2, like.getUserId());
+            });
+            List<Like> deleted = countApplied(removed, counts, -1, likesByFilm);
+            deleted.forEach(like -> unindexLike(like.getFilmId(), like.getUserId()));
+            applied += deleted.size();
+        }
+        likesByFilm.values().removeIf(delta -> delta == 0);
+        if (likesByFilm.isEmpty()) {
+            return new AppliedLikeChanges(likesByFilm, applied);
+        }
+        List<Object[]> likeCounts = likesByFilm.entrySet().stream()
+                .map(entry -> new Object[]{entry.getValue(), entry.getKey()})
+                .collect(Collectors.toList());
+        jdbc.batchUpdate(ADD_LIKE_COUNT_QUERY, likeCounts);
+        likesByFilm.forEach(popularityIndex::add);
+        return new AppliedLikeChanges(likesByFilm, applied);
     }
 
     public List<Like> findLikesByFilmId(Long filmId) {
         return findMany(FIND_ALL_BY_FILM_ID_QUERY, filmId);
     }
+
+    // Первые limitPerFilm лайков каждого фильма страницы одним запросом на каждые MULTI_GET_CHUNK_SIZE фильмов:
+    // у популярного фильма лайков может быть больше, чем имеет смысл отдавать в ответе
+    public Map<Long, Set<Like>> findLikesForFilms(List<Long> filmIds, int limitPerFilm) {
+        if (filmIds.isEmpty() || limitPerFilm <= 0) {
+            return Collections.emptyMap();
+        }
+        List<Like> likes = findByIds(FIND_FIRST_BY_FILM_IDS_QUERY, filmIds, mapper,
+                filmIds.size() > MULTI_GET_CHUNK_SIZE, limitPerFilm);
+        Map<Long, Set<Like>> likesByFilm = new HashMap<>();
+        for (Like like : likes) {
+            likesByFilm.computeIfAbsent(like.getFilmId(), k -> new LinkedHashSet<>()).add(like);
+        }
+        return likesByFilm;
+    }
+
+    private void indexLike(long filmId, long userId) {
+        likeIndex.add(filmId, userId);
+        indexClaimedLike(filmId, userId);
+    }
+
+    // Пара уже занята в множестве лайков, остальные индексы обновляются после записи в базу
+    private void indexClaimedLike(long filmId, long userId) {
+        userLikes.add(userId, filmId);
+        recommender.likeChanged(filmId, userId);
+        trending.like(filmId, userId);
+        undoOnRollback(() -> {
+            likeIndex.remove(filmId, userId);
+            userLikes.remove(userId, filmId);
+            recommender.likeChanged(filmId, userId);
+            trending.unlike(filmId, userId);
+        });
+    }
+
+    private void unindexLike(long filmId, long userId) {
+        likeIndex.remove(filmId, userId);
+        unindexClaimedLike(filmId, userId);
+    }
+
+    private void unindexClaimedLike(long filmId, long userId) {
+        userLikes.remove(userId, filmId);
+        recommender.likeChanged(filmId, userId);
+        trending.unlike(filmId, userId);
+        // После отката лайк возвращается в тренды текущей минутой: исходное время уже не известно
+        undoOnRollback(() -> {
+            likeIndex.add(filmId, userId);
+            userLikes.add(userId, filmId);
+            recommender.likeChanged(filmId, userId);
+            trending.like(filmId, userId);
+        });
+    }
+
+    // Возвращает лайки, которые действительно изменили таблицу
+    private List<Like> countApplied(List<Like> likes, int[][] counts, long delta, Map<Long, Long> likesByFilm) {
+        List<Like> applied = new ArrayList<>();
+        int idx = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                if (count > 0) {
+                    Like like = likes.get(idx);
+                    likesByFilm.merge(like.getFilmId(), delta, Long::sum);
+                    applied.add(like);
+                }
+                idx++;
+            }
+        }
+        return applied;
+    }
+
+    private NotFoundException notFound(Long filmId, Long userId) {
+        return new NotFoundException(String.format("Фильм id: %d или пользователь с id=%d не найден",
+                filmId, userId));
+    }
+
+    private DuplicatedDataException notLiked(Long filmId, Long userId) {
+        return new DuplicatedDataException(String.format("Фильму с id = %d, еще не поставлен поставлен лайк " +
+                "пользователем с id = %d", filmId, userId));
+    }
+
+    private DuplicatedDataException alreadyLiked(Long filmId, Long userId) {
+        return new DuplicatedDataException(String.format("Фильму с id = %d, уже поставлен лайк пользователем " +
+                "с id = %d", filmId, userId));
+    }
+
+    @Transactional
+    public int reconcileLikeCounts() {
+        return jdbc.update(RECONCILE_LIKE_COUNTS_QUERY);
+    }
+
+    // Изменение числа лайков по фильмам и число строк, которые действительно изменили таблицу
+    public record AppliedLikeChanges(Map<Long, Long> deltasByFilm, int applied) {
+    }
 }
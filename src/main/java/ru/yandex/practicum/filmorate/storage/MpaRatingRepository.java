@@ -4,29 +4,25 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataRegistry;
 
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public class MpaRatingRepository extends BaseRepository<MpaRating> {
-    private static final String FIND_ALL_QUERY =
-            "SELECT * " +
-            "FROM ratings";
-    private static final String FIND_BY_ID_QUERY =
-            "SELECT * " +
-            "FROM ratings " +
-            "WHERE id = ?";
+    private final ReferenceDataRegistry referenceData;
 
-    public MpaRatingRepository(JdbcTemplate jdbc, RowMapper<MpaRating> mapper) {
+    public MpaRatingRepository(JdbcTemplate jdbc, RowMapper<MpaRating> mapper, ReferenceDataRegistry referenceData) {
         super(jdbc, mapper, MpaRating.class);
+        this.referenceData = referenceData;
     }
 
     public List<MpaRating> getAllRatings() {
-        return findMany(FIND_ALL_QUERY);
+        return referenceData.getAllRatings();
     }
 
     public Optional<MpaRating> getRatingById(Long id) {
-        return findOne(FIND_BY_ID_QUERY, id);
+        return referenceData.getRating(id);
     }
 }
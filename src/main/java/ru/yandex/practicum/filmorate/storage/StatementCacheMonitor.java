@@ -0,0 +1,182 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Оценка попаданий в кэш разобранных запросов H2. H2 хранит для каждого соединения LRU-кэш из QUERY_CACHE_SIZE
+ * запросов по тексту SQL и при повторной подготовке запроса пропускает разбор и построение плана.
+ * Сам драйвер попадания не считает, поэтому монитор оборачивает источник данных и ведет для каждого
+ * физического соединения такой же LRU по текстам подготовленных запросов. Это модель, а не счетчик H2:
+ * она не видит сброса кэша после изменения схемы и запросов, которые H2 не кэширует, поэтому метрики
+ * помечены как оценка. Сам выигрыш от кэша измеряет StatementCacheBenchmark.
+ *
+ * <p>Каждое соединение оборачивается рефлексивным прокси, что добавляет работы на каждом вызове, поэтому
+ * монитор выключен по умолчанию и включается свойством {@code filmorate.jdbc.statement-cache-monitor.enabled}
+ * на время диагностики.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.jdbc.statement-cache-monitor.enabled", havingValue = "true")
+public class StatementCacheMonitor implements BeanPostProcessor, MeterBinder {
+    static final int DEFAULT_QUERY_CACHE_SIZE = 8;
+    private static final String QUERY_CACHE_SIZE_QUERY =
+            "SELECT SETTING_VALUE FROM INFORMATION_SCHEMA.SETTINGS WHERE SETTING_NAME = 'QUERY_CACHE_SIZE'";
+
+    private final Map<Connection, Map<String, Boolean>> statementsByConnection =
+            Collections.synchronizedMap(new WeakHashMap<>());
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private volatile int queryCacheSize = -1;
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        // Обертки и маршрутизаторы отдают соединения уже отслеживаемых источников
+        if (bean instanceof DataSource dataSource && !(bean instanceof DelegatingDataSource)
+                && !(bean instanceof AbstractRoutingDataSource)) {
+            return new MonitoredDataSource(dataSource);
+        }
+        return bean;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public double estimatedHitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    Connection monitor(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new ConnectionHandler(connection)
+        );
+    }
+
+    private void prepared(Connection physical, String sql) throws SQLException {
+        Map<String, Boolean> statements = statementsByConnection.get(physical);
+        if (statements == null) {
+            int capacity = queryCacheSize(physical);
+            statements = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    return size() > capacity;
+                }
+            };
+            statementsByConnection.put(physical, statements);
+        }
+        synchronized (statements) {
+            if (statements.put(sql, Boolean.TRUE) != null) {
+                hits.increment();
+            } else {
+                misses.increment();
+            }
+        }
+    }
+
+    // Размер кэша задается для всей базы, поэтому читается один раз
+    private int queryCacheSize(Connection physical) throws SQLException {
+        int size = queryCacheSize;
+        if (size >= 0) {
+            return size;
+        }
+        size = DEFAULT_QUERY_CACHE_SIZE;
+        try (Statement statement = physical.createStatement();
+             ResultSet rs = statement.executeQuery(QUERY_CACHE_SIZE_QUERY)) {
+            if (rs.next()) {
+                size = Integer.parseInt(rs.getString(1));
+            }
+        }
+        log.info("Размер кэша разобранных запросов H2: {}", size);
+        queryCacheSize = size;
+        return size;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("jdbc.statements.prepared", hits, LongAdder::doubleValue)
+                .tag("result", "estimated_hit")
+                .description("Подготовки запросов, которые по оценке взяты из кэша разобранных запросов H2")
+                .register(registry);
+        FunctionCounter.builder("jdbc.statements.prepared", misses, LongAdder::doubleValue)
+                .tag("result", "estimated_miss")
+                .description("Подготовки запросов, которые по оценке разбирались заново")
+                .register(registry);
+        Gauge.builder("jdbc.statements.cache.estimated_hit_ratio", this, StatementCacheMonitor::estimatedHitRatio)
+                .description("Оценка доли подготовок запросов без разбора")
+                .register(registry);
+    }
+
+    private final class MonitoredDataSource extends DelegatingDataSource {
+        private MonitoredDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return monitor(super.getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return monitor(super.getConnection(username, password));
+        }
+    }
+
+    // Пул отдает обертки над физическими соединениями, а кэш H2 привязан к физическому
+    private final class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+
+        private ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("prepareStatement") || name.equals("prepareCall")) {
+                prepared(target.unwrap(Connection.class), (String) args[0]);
+            } else if (name.equals("equals")) {
+                return proxy == args[0];
+            } else if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+}
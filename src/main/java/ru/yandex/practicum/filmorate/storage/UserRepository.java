@@ -1,20 +1,40 @@
 package ru.yandex.practicum.filmorate.storage;
 
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.DuplicatedDataException;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.index.FriendGraphIndex;
+import ru.yandex.practicum.filmorate.storage.index.UserIdIndex;
 
 import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Repository
 public class UserRepository extends BaseRepository<User> {
     private static final String FIND_ALL_QUERY =
             "SELECT * " +
             "FROM users";
+    private static final String FIND_PAGE_QUERY =
+            "SELECT * " +
+            "FROM users " +
+            "WHERE id > ? " +
+            "ORDER BY id " +
+            "LIMIT ?";
     private static final String FIND_BY_ID_QUERY =
             "SELECT * " +
             "FROM users " +
@@ -26,34 +46,44 @@ public class UserRepository extends BaseRepository<User> {
             "UPDATE users " +
             "SET email = ?, name = ?, login = ?, birthday = ? " +
             "WHERE id = ?";
-    private static final String FIND_FRIENDS_QUERY =
-            "SELECT u.* " +
-            "FROM users u " +
-            "JOIN friends f ON u.id = f.sender " +
-            "WHERE f.receiver = ?";
-    private static final String GET_COMMON_FRIENDS_QUERY =
-            "SELECT u.* " +
-            "FROM users u " +
-            "JOIN friends f1 ON u.id = f1.sender " +
-            "JOIN friends f2 ON u.id = f2.sender " +
-            "WHERE f1.receiver = ? AND f2.receiver = ?";
+    private static final String FIND_BY_IDS_QUERY =
+            "SELECT * " +
+            "FROM users " +
+            "WHERE id = ANY(?)";
+    private static final String FIND_EXISTING_EMAILS_QUERY =
+            "SELECT email " +
+            "FROM users " +
+            "WHERE email = ANY(?)";
     private static final String CHECK_EMAIL_QUERY =
             "SELECT COUNT(*) " +
             "FROM users WHERE email = ?";
 
+    private final FriendGraphIndex friendGraph;
+    private final UserIdIndex userIds;
 
-    public UserRepository(JdbcTemplate jdbc, RowMapper<User> mapper) {
+    public UserRepository(JdbcTemplate jdbc, RowMapper<User> mapper, FriendGraphIndex friendGraph,
+                          UserIdIndex userIds) {
         super(jdbc, mapper, User.class);
+        this.friendGraph = friendGraph;
+        this.userIds = userIds;
     }
 
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
     public List<User> getAllUsers() {
         return findMany(FIND_ALL_QUERY);
     }
 
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public List<User> getUsersPage(long afterId, int limit) {
+        return findMany(FIND_PAGE_QUERY, afterId, limit);
+    }
+
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
     public Optional<User> getUserById(Long id) {
         return findOne(FIND_BY_ID_QUERY, id);
     }
 
+    @Transactional
     public User addNewUser(User user) {
         checkEmail(user);
         long id = insert(
@@ -64,9 +94,54 @@ public class UserRepository extends BaseRepository<User> {
                 Date.valueOf(user.getBirthday())
         );
         user.setId(id);
+        indexUser(id);
         return user;
     }
 
+    // Пакетная вставка для массовой загрузки: уникальность email проверяется вызывающим кодом
+    @Transactional
+    public List<User> addNewUsers(List<User> users) {
+        if (users.isEmpty()) {
+            return users;
+        }
+        GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbc.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_QUERY, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int idx) throws SQLException {
+                        User user = users.get(idx);
+                        ps.setString(1, user.getEmail());
+                        ps.setString(2, user.getName());
+                        ps.setString(3, user.getLogin());
+                        ps.setDate(4, Date.valueOf(user.getBirthday()));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return users.size();
+                    }
+                },
+                keyHolder
+        );
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int idx = 0; idx < users.size(); idx++) {
+            users.get(idx).setId(((Number) keys.get(idx).values().iterator().next()).longValue());
+            indexUser(users.get(idx).getId());
+        }
+        return users;
+    }
+
+    // Существует ли пользователь, без обращения к базе
+    public boolean exists(long userId) {
+        return userIds.contains(userId);
+    }
+
+    public List<String> findExistingEmails(Collection<String> emails) {
+        return findByIds(FIND_EXISTING_EMAILS_QUERY, emails, (rs, rowNum) -> rs.getString("email"), false);
+    }
+
+    @Transactional
     public User updateUser(User user) {
         checkEmail(user);
         update(
@@ -80,12 +155,30 @@ public class UserRepository extends BaseRepository<User> {
         return user;
     }
 
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
     public List<User> getFriends(Long receiver) {
-        return findMany(FIND_FRIENDS_QUERY, receiver);
+        return findUsers(friendGraph.getFriendIds(receiver));
     }
 
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
     public List<User> getCommonFriends(Long userId, Long friendId) {
-        return jdbc.query(GET_COMMON_FRIENDS_QUERY, mapper, userId, friendId);
+        return findUsers(friendGraph.getCommonFriendIds(userId, friendId));
+    }
+
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public List<User> getSuggestedFriends(Long userId, int limit, int fanOutCap) {
+        return findUsers(friendGraph.getSuggestedFriendIds(userId, limit, fanOutCap));
+    }
+
+    // Пользователи возвращаются в порядке переданных идентификаторов
+    private List<User> findUsers(long[] ids) {
+        Map<Long, User> usersById = findByIds(FIND_BY_IDS_QUERY, Arrays.stream(ids).boxed().collect(Collectors.toList()))
+                .stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        return Arrays.stream(ids)
+                .mapToObj(usersById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
 
     private void checkEmail(User user) {
@@ -96,4 +189,9 @@ public class UserRepository extends BaseRepository<User> {
             );
         }
     }
-}
\ No newline at end of file
+
+    private void indexUser(long userId) {
+        userIds.add(userId);
+        undoOnRollback(() -> userIds.remove(userId));
+    }
+}
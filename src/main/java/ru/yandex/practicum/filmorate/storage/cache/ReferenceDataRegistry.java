@@ -0,0 +1,94 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Справочники жанров и рейтингов MPA, загруженные в память целиком.
+ * Таблицы заполняются только из data.sql, поэтому после старта чтения не обращаются к базе;
+ * если справочники поменяли в обход приложения, нужно вызвать {@link #reload()}.
+ */
+@Slf4j
+@Component
+public class ReferenceDataRegistry {
+    private static final String FIND_ALL_GENRES_QUERY =
+            "SELECT * " +
+            "FROM genres " +
+            "ORDER BY id";
+    private static final String FIND_ALL_RATINGS_QUERY =
+            "SELECT * " +
+            "FROM ratings " +
+            "ORDER BY id";
+
+    private final JdbcTemplate jdbc;
+    private final RowMapper<Genre> genreMapper;
+    private final RowMapper<MpaRating> ratingMapper;
+    private volatile Snapshot snapshot = new Snapshot(Collections.emptyMap(), Collections.emptyMap());
+
+    public ReferenceDataRegistry(JdbcTemplate jdbc, RowMapper<Genre> genreMapper, RowMapper<MpaRating> ratingMapper) {
+        this.jdbc = jdbc;
+        this.genreMapper = genreMapper;
+        this.ratingMapper = ratingMapper;
+    }
+
+    @PostConstruct
+    public void reload() {
+        Map<Long, Genre> genres = new LinkedHashMap<>();
+        jdbc.query(FIND_ALL_GENRES_QUERY, genreMapper).forEach(genre -> genres.put(genre.getId(), genre));
+        Map<Long, MpaRating> ratings = new LinkedHashMap<>();
+        jdbc.query(FIND_ALL_RATINGS_QUERY, ratingMapper).forEach(rating -> ratings.put(rating.getId(), rating));
+        snapshot = new Snapshot(Collections.unmodifiableMap(genres), Collections.unmodifiableMap(ratings));
+        log.info("Справочники загружены: жанров {}, рейтингов {}", genres.size(), ratings.size());
+    }
+
+    public List<Genre> getAllGenres() {
+        return snapshot.genres().values().stream()
+                .map(this::copy)
+                .collect(Collectors.toList());
+    }
+
+    public Optional<Genre> getGenre(Long id) {
+        return Optional.ofNullable(snapshot.genres().get(id)).map(this::copy);
+    }
+
+    public boolean genreExists(Long id) {
+        return snapshot.genres().containsKey(id);
+    }
+
+    public List<MpaRating> getAllRatings() {
+        return snapshot.ratings().values().stream()
+                .map(this::copy)
+                .collect(Collectors.toList());
+    }
+
+    public Optional<MpaRating> getRating(Long id) {
+        return Optional.ofNullable(snapshot.ratings().get(id)).map(this::copy);
+    }
+
+    public boolean ratingExists(Long id) {
+        return snapshot.ratings().containsKey(id);
+    }
+
+    private Genre copy(Genre genre) {
+        return new Genre(genre.getId(), genre.getName());
+    }
+
+    private MpaRating copy(MpaRating rating) {
+        return new MpaRating(rating.getId(), rating.getName());
+    }
+
+    private record Snapshot(Map<Long, Genre> genres, Map<Long, MpaRating> ratings) {
+    }
+}
@@ -0,0 +1,316 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Рейтинг фильмов по количеству лайков, который хранится в памяти.
+ * Заполняется из базы при старте и обновляется репозиториями при каждой записи лайка,
+ * поэтому выборка топ-N стоит O(N) и не трогает таблицу likes.
+ *
+ * <p>Помимо общего рейтинга ведутся отдельные рейтинги по каждому жанру и году выхода. Выборка по жанру
+ * и году одновременно идет по меньшему из двух рейтингов с проверкой второго условия.
+ *
+ * <p>Изменения внутри транзакции применяются сразу, чтобы их видела сама транзакция, а откат лайка
+ * индекс выполняет сам. Перезагрузка читает базу без блокировки и подменяет рейтинги под ней.
+ * Изменения, зафиксированные за время чтения, записываются в журнал и повторяются на новых рейтингах;
+ * изменение, примененное до подмены и зафиксированное после нее, применяется к новым рейтингам
+ * при фиксации. Дважды может учесться только лайк, зафиксированный между началом журнала и
+ * началом запроса к базе, а они идут друг за другом.
+ */
+@Slf4j
+@Component
+public class FilmPopularityIndex {
+    private static final String LOAD_QUERY =
+            "SELECT id, like_count, release_date " +
+            "FROM films";
+    private static final String LOAD_GENRES_QUERY =
+            "SELECT film_id, genre_id " +
+            "FROM film_genres";
+
+    private final JdbcTemplate jdbc;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object reloadLock = new Object();
+    private Rankings rankings = new Rankings();
+    private long epoch;
+    private List<Consumer<Rankings>> journal;
+
+    public FilmPopularityIndex(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    @PostConstruct
+    public void reload() {
+        synchronized (reloadLock) {
+            lock.writeLock().lock();
+            try {
+                journal = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            Rankings loaded = new Rankings();
+            Map<Long, Integer> yearsByFilm = new HashMap<>();
+            Map<Long, Set<Long>> genresByFilm = new HashMap<>();
+            try {
+                jdbc.query(LOAD_QUERY, rs -> {
+                    loaded.ranking.put(rs.getLong("id"), rs.getLong("like_count"));
+                    yearsByFilm.put(rs.getLong("id"),
+                            FilmAttributes.yearOf(rs.getObject("release_date", LocalDate.class)));
+                });
+                jdbc.query(LOAD_GENRES_QUERY, rs -> {
+                    genresByFilm.computeIfAbsent(rs.getLong("film_id"), id -> new HashSet<>())
+                            .add(rs.getLong("genre_id"));
+                });
+                yearsByFilm.forEach((filmId, year) ->
+                        loaded.index(filmId, new FilmAttributes(year, genresByFilm.getOrDefault(filmId, Set.of()))));
+            } catch (RuntimeException e) {
+                lock.writeLock().lock();
+                try {
+                    journal = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                throw e;
+            }
+            int replayed;
+            lock.writeLock().lock();
+            try {
+                journal.forEach(change -> change.accept(loaded));
+                replayed = journal.size();
+                journal = null;
+                rankings = loaded;
+                epoch++;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.info("Рейтинг популярности загружен, фильмов: {}, жанров: {}, лет: {}, повторено изменений: {}",
+                    loaded.ranking.size(), loaded.rankingsByGenre.size(), loaded.rankingsByYear.size(), replayed);
+        }
+    }
+
+    public void addFilm(long filmId, FilmAttributes attributes) {
+        change(current -> {
+            current.addFilm(filmId, attributes);
+            return null;
+        }, null);
+    }
+
+    // Переносит фильм в рейтинги новых жанров и года; возвращает прежние атрибуты для отката
+    public FilmAttributes updateFilm(long filmId, FilmAttributes attributes) {
+        return change(current -> current.updateFilm(filmId, attributes), null);
+    }
+
+    public void removeFilm(long filmId) {
+        change(current -> {
+            current.removeFilm(filmId);
+            return null;
+        }, null);
+    }
+
+    public boolean contains(long filmId) {
+        lock.readLock().lock();
+        try {
+            return rankings.ranking.contains(filmId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getLikeCount(long filmId) {
+        lock.readLock().lock();
+        try {
+            return rankings.ranking.score(filmId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void increment(long filmId) {
+        add(filmId, 1);
+    }
+
+    public void decrement(long filmId) {
+        add(filmId, -1);
+    }
+
+    public List<Long> getTopFilmIds(int count) {
+        lock.readLock().lock();
+        try {
+            return rankings.ranking.top(count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Пустой genreId или year означает отсутствие фильтра
+    public List<Long> getTopFilmIds(int count, Long genreId, Integer year) {
+        if (genreId == null && year == null) {
+            return getTopFilmIds(count);
+        }
+        lock.readLock().lock();
+        try {
+            Leaderboard byGenre = genreId == null ? null : rankings.rankingsByGenre.get(genreId);
+            Leaderboard byYear = year == null ? null : rankings.rankingsByYear.get(year);
+            if (genreId != null && byGenre == null || year != null && byYear == null) {
+                return Collections.emptyList();
+            }
+            if (byYear == null) {
+                return byGenre.top(count);
+            }
+            if (byGenre == null) {
+                return byYear.top(count);
+            }
+            Map<Long, FilmAttributes> attributesByFilm = rankings.attributesByFilm;
+            if (byGenre.size() <= byYear.size()) {
+                return byGenre.top(count, filmId -> attributesByFilm.get(filmId).year() == year);
+            }
+            return byYear.top(count, filmId -> attributesByFilm.get(filmId).genreIds().contains(genreId));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Внутри транзакции изменение отменяется при откате, если рейтинги с тех пор не перезагружались:
+    // в загруженных из базы незафиксированного лайка нет
+    public void add(long filmId, long delta) {
+        change(current -> {
+            current.add(filmId, delta);
+            return null;
+        }, current -> current.add(filmId, -delta));
+    }
+
+    // Изменения фильмов повторяемы, откат их выполняет репозиторий; откат лайка передается в undo
+    private <T> T change(Function<Rankings, T> change, Consumer<Rankings> undo) {
+        T result;
+        long appliedEpoch;
+        lock.writeLock().lock();
+        try {
+            result = change.apply(rankings);
+            appliedEpoch = epoch;
+            if (!TransactionSynchronizationManager.isSynchronizationActive() && journal != null) {
+                journal.add(change::apply);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    completed(status == STATUS_COMMITTED, appliedEpoch, change::apply, undo);
+                }
+            });
+        }
+        return result;
+    }
+
+    private void completed(boolean committed, long appliedEpoch, Consumer<Rankings> change,
+                           Consumer<Rankings> undo) {
+        lock.writeLock().lock();
+        try {
+            if (committed && journal != null) {
+                journal.add(change);
+            } else if (committed && appliedEpoch != epoch) {
+                change.accept(rankings);
+            } else if (!committed && undo != null && appliedEpoch == epoch) {
+                undo.accept(rankings);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Рейтинги целиком подменяются при перезагрузке; синхронизация остается за владельцем
+    private static final class Rankings {
+        private final Leaderboard ranking = new Leaderboard();
+        private final Map<Long, Leaderboard> rankingsByGenre = new HashMap<>();
+        private final Map<Integer, Leaderboard> rankingsByYear = new HashMap<>();
+        private final Map<Long, FilmAttributes> attributesByFilm = new HashMap<>();
+
+        private void addFilm(long filmId, FilmAttributes attributes) {
+            if (!ranking.contains(filmId)) {
+                ranking.put(filmId, 0);
+                index(filmId, attributes);
+            }
+        }
+
+        private FilmAttributes updateFilm(long filmId, FilmAttributes attributes) {
+            FilmAttributes previous = unindex(filmId);
+            if (ranking.contains(filmId)) {
+                index(filmId, attributes);
+            }
+            return previous;
+        }
+
+        private void removeFilm(long filmId) {
+            unindex(filmId);
+            ranking.remove(filmId);
+        }
+
+        // Лайк удаленного фильма не возвращает его в рейтинг: откат лайка может прийти после отката
+        // добавления фильма
+        private void add(long filmId, long delta) {
+            if (!ranking.contains(filmId)) {
+                return;
+            }
+            ranking.add(filmId, delta);
+            FilmAttributes attributes = attributesByFilm.get(filmId);
+            if (attributes != null) {
+                long likes = ranking.score(filmId);
+                attributes.genreIds().forEach(genreId -> rankingsByGenre.get(genreId).put(filmId, likes));
+                rankingsByYear.get(attributes.year()).put(filmId, likes);
+            }
+        }
+
+        private void index(long filmId, FilmAttributes attributes) {
+            long likes = ranking.score(filmId);
+            attributesByFilm.put(filmId, attributes);
+            attributes.genreIds().forEach(genreId ->
+                    rankingsByGenre.computeIfAbsent(genreId, id -> new Leaderboard()).put(filmId, likes)
+            );
+            rankingsByYear.computeIfAbsent(attributes.year(), y -> new Leaderboard()).put(filmId, likes);
+        }
+
+        private FilmAttributes unindex(long filmId) {
+            FilmAttributes attributes = attributesByFilm.remove(filmId);
+            if (attributes != null) {
+                attributes.genreIds().forEach(genreId -> rankingsByGenre.get(genreId).remove(filmId));
+                rankingsByYear.get(attributes.year()).remove(filmId);
+            }
+            return attributes;
+        }
+    }
+
+    /**
+     * Атрибуты фильма, по которым ведутся отдельные рейтинги.
+     * Фильмы без даты выхода (столбец release_date допускает NULL) попадают в рейтинг года UNKNOWN_YEAR.
+     */
+    public record FilmAttributes(int year, Set<Long> genreIds) {
+        public static final int UNKNOWN_YEAR = 0;
+
+        public FilmAttributes {
+            genreIds = Set.copyOf(genreIds);
+        }
+
+        public static int yearOf(LocalDate releaseDate) {
+            return releaseDate == null ? UNKNOWN_YEAR : releaseDate.getYear();
+        }
+    }
+}
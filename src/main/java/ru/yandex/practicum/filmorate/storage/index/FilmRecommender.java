@@ -0,0 +1,271 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Рекомендации фильмов по совместной фильтрации над лайками в памяти. Соседи пользователя — пользователи
+ * с наибольшим числом общих с ним лайков; фильм получает сумму пересечений лайкнувших его соседей,
+ * уже лайкнутые пользователем фильмы не рекомендуются.
+ *
+ * <p>Результат кэшируется для каждого пользователя. Лайк пользователя U фильму F меняет пересечения только
+ * у лайкнувших F и набор фильмов соседа U, поэтому сбрасываются записи самого U, лайкнувших F и тех,
+ * у кого U был соседом. Кэш ограничен по размеру, вытесняется давно не запрашиваемый пользователь.
+ *
+ * <p>Расчет идет без блокировок, и лайк во время расчета может сделать результат устаревшим. Поэтому у
+ * пользователей есть версии: входных данных рекомендации (свои лайки и пересечения) и собственного набора
+ * лайков. Результат сохраняется, только если не изменились версия самого пользователя и версии наборов
+ * его соседей; лайки остальных пользователей кэшированию не мешают. Версии хранятся в полосах по хэшу id,
+ * поэтому совпадение полосы изредка отбрасывает лишний расчет, но не оставляет устаревший.
+ */
+@Component
+public class FilmRecommender {
+    // Меньший объем работы считается в текущем потоке: разбиение обходится дороже самого подсчета
+    private static final int PARALLEL_THRESHOLD = 50_000;
+    private static final int VERSION_STRIPE_BITS = 12;
+    private static final int VERSION_STRIPE_SHIFT = Long.SIZE - VERSION_STRIPE_BITS;
+
+    private final UserLikesIndex userLikes;
+    private final int neighbours;
+    private final int maxResults;
+    private final int maxFilmLikers;
+    private final int maxCachedUsers;
+
+    private final Map<Long, Recommendation> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Long, Set<Long>> dependentUsers = new ConcurrentHashMap<>();
+    private final AtomicLongArray inputVersions = new AtomicLongArray(1 << VERSION_STRIPE_BITS);
+    private final AtomicLongArray likesVersions = new AtomicLongArray(1 << VERSION_STRIPE_BITS);
+    private final AtomicLong epoch = new AtomicLong();
+
+    public FilmRecommender(UserLikesIndex userLikes,
+                           @Value("${filmorate.recommendations.neighbours:50}") int neighbours,
+                           @Value("${filmorate.recommendations.max-results:100}") int maxResults,
+                           @Value("${filmorate.recommendations.max-film-likers:10000}") int maxFilmLikers,
+                           @Value("${filmorate.recommendations.cache.max-size:100000}") int maxCachedUsers) {
+        this.userLikes = userLikes;
+        this.neighbours = neighbours;
+        this.maxResults = maxResults;
+        this.maxFilmLikers = maxFilmLikers;
+        this.maxCachedUsers = maxCachedUsers;
+    }
+
+    public int getMaxResults() {
+        return maxResults;
+    }
+
+    // Не более limit id фильмов в порядке убывания оценки
+    public long[] recommend(long userId, int limit) {
+        Recommendation recommendation;
+        synchronized (cache) {
+            recommendation = cache.get(userId);
+        }
+        if (recommendation == null) {
+            Stamp stamp = new Stamp(epoch.get(), inputVersions.get(stripe(userId)));
+            recommendation = compute(userId, stamp);
+            store(userId, recommendation, stamp);
+        }
+        long[] filmIds = recommendation.filmIds();
+        return Arrays.copyOf(filmIds, Math.min(filmIds.length, limit));
+    }
+
+    // Вызывается после изменения индекса лайков, в том числе при откате транзакции. Фильм с числом лайков
+    // больше maxFilmLikers в пересечениях не участвует, и у лайкнувших его рекомендации не меняются;
+    // граница включает maxFilmLikers + 1, когда лайк переводит фильм через порог в любую сторону
+    public void likeChanged(long filmId, long userId) {
+        likesVersions.incrementAndGet(stripe(userId));
+        inputVersions.incrementAndGet(stripe(userId));
+        invalidate(userId);
+        if (userLikes.likerCount(filmId) <= maxFilmLikers + 1) {
+            userLikes.forEachLiker(filmId, liker -> {
+                inputVersions.incrementAndGet(stripe(liker));
+                invalidate(liker);
+            });
+        }
+        Set<Long> dependents = dependentUsers.remove(userId);
+        if (dependents != null) {
+            dependents.forEach(this::invalidate);
+        }
+    }
+
+    public void invalidate(long userId) {
+        Recommendation removed;
+        synchronized (cache) {
+            removed = cache.remove(userId);
+        }
+        if (removed != null) {
+            unregister(userId, removed);
+        }
+    }
+
+    public void invalidateAll() {
+        epoch.incrementAndGet();
+        synchronized (cache) {
+            cache.clear();
+        }
+        dependentUsers.clear();
+    }
+
+    public int cachedUsers() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    // Результат, посчитанный до изменения лайков, мог устареть, поэтому сохраняется только при неизменных
+    // версиях. Версии проверяются и после регистрации соседей: likeChanged могла пройти между проверкой
+    // и вставкой, а после регистрации ее пропустить уже нельзя
+    private void store(long userId, Recommendation recommendation, Stamp stamp) {
+        if (!stamp.isCurrent(userId, recommendation.neighbourIds())) {
+            return;
+        }
+        long evictedUserId = 0;
+        Recommendation evicted = null;
+        synchronized (cache) {
+            cache.put(userId, recommendation);
+            if (cache.size() > maxCachedUsers) {
+                Iterator<Map.Entry<Long, Recommendation>> eldest = cache.entrySet().iterator();
+                Map.Entry<Long, Recommendation> entry = eldest.next();
+                evictedUserId = entry.getKey();
+                evicted = entry.getValue();
+                eldest.remove();
+            }
+        }
+        if (evicted != null) {
+            unregister(evictedUserId, evicted);
+        }
+        for (long neighbour : recommendation.neighbourIds()) {
+            dependentUsers.computeIfAbsent(neighbour, id -> ConcurrentHashMap.newKeySet()).add(userId);
+        }
+        if (!stamp.isCurrent(userId, recommendation.neighbourIds())) {
+            invalidate(userId);
+        }
+    }
+
+    private void unregister(long userId, Recommendation recommendation) {
+        for (long neighbour : recommendation.neighbourIds()) {
+            Set<Long> dependents = dependentUsers.get(neighbour);
+            if (dependents != null) {
+                dependents.remove(userId);
+            }
+        }
+    }
+
+    private static int stripe(long userId) {
+        return (int) (LongHashSet.mix(userId) >>> VERSION_STRIPE_SHIFT);
+    }
+
+    private Recommendation compute(long userId, Stamp stamp) {
+        long[] liked = userLikes.likedFilms(userId);
+        if (liked.length == 0) {
+            return Recommendation.EMPTY;
+        }
+        LongIntCounter overlaps = ForkJoinPool.commonPool().invoke(new OverlapTask(userId, liked, 0, liked.length));
+        long[] neighbourIds = overlaps.topKeys(neighbours);
+        stamp.neighbourVersions = new long[neighbourIds.length];
+        LongIntCounter scores = new LongIntCounter(neighbourIds.length * 16);
+        for (int i = 0; i < neighbourIds.length; i++) {
+            long neighbour = neighbourIds[i];
+            stamp.neighbourVersions[i] = likesVersions.get(stripe(neighbour));
+            int overlap = overlaps.get(neighbour);
+            for (long filmId : userLikes.likedFilms(neighbour)) {
+                if (Arrays.binarySearch(liked, filmId) < 0) {
+                    scores.add(filmId, overlap);
+                }
+            }
+        }
+        return new Recommendation(scores.topKeys(maxResults), neighbourIds);
+    }
+
+    // Считает пересечения лайков пользователя с остальными по фильмам [from, to). Фильмы с более чем
+    // maxFilmLikers лайками пропускаются: они есть почти у всех и не отличают соседей
+    private final class OverlapTask extends RecursiveTask<LongIntCounter> {
+        private final long userId;
+        private final long[] films;
+        private final int from;
+        private final int to;
+
+        private OverlapTask(long userId, long[] films, int from, int to) {
+            this.userId = userId;
+            this.films = films;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected LongIntCounter compute() {
+            long work = 0;
+            for (int i = from; i < to; i++) {
+                int likers = userLikes.likerCount(films[i]);
+                work += likers > maxFilmLikers ? 0 : likers;
+            }
+            if (to - from == 1 || work <= PARALLEL_THRESHOLD) {
+                return count(work);
+            }
+            int middle = (from + to) >>> 1;
+            OverlapTask left = new OverlapTask(userId, films, from, middle);
+            left.fork();
+            LongIntCounter right = new OverlapTask(userId, films, middle, to).compute();
+            LongIntCounter joined = left.join();
+            if (joined.size() < right.size()) {
+                right.addAll(joined);
+                return right;
+            }
+            joined.addAll(right);
+            return joined;
+        }
+
+        private LongIntCounter count(long work) {
+            LongIntCounter overlaps = new LongIntCounter((int) Math.min(work, PARALLEL_THRESHOLD));
+            for (int i = from; i < to; i++) {
+                if (userLikes.likerCount(films[i]) > maxFilmLikers) {
+                    continue;
+                }
+                userLikes.forEachLiker(films[i], liker -> {
+                    if (liker != userId) {
+                        overlaps.increment(liker);
+                    }
+                });
+            }
+            return overlaps;
+        }
+    }
+
+    // Версии, с которыми начался расчет; версия соседа читается перед чтением его лайков
+    private final class Stamp {
+        private final long epochVersion;
+        private final long inputVersion;
+        private long[] neighbourVersions = SortedIdSets.EMPTY;
+
+        private Stamp(long epochVersion, long inputVersion) {
+            this.epochVersion = epochVersion;
+            this.inputVersion = inputVersion;
+        }
+
+        private boolean isCurrent(long userId, long[] neighbourIds) {
+            if (epoch.get() != epochVersion || inputVersions.get(stripe(userId)) != inputVersion) {
+                return false;
+            }
+            for (int i = 0; i < neighbourIds.length; i++) {
+                if (likesVersions.get(stripe(neighbourIds[i])) != neighbourVersions[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private record Recommendation(long[] filmIds, long[] neighbourIds) {
+        static final Recommendation EMPTY = new Recommendation(SortedIdSets.EMPTY, SortedIdSets.EMPTY);
+    }
+}
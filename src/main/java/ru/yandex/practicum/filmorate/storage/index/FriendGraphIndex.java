@@ -0,0 +1,75 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+
+/**
+ * Граф дружбы в памяти: для каждого пользователя хранится отсортированный массив id его друзей
+ * (отправителей заявок), поэтому общие друзья находятся слиянием двух массивов за O(n + m).
+ */
+@Slf4j
+@Component
+public class FriendGraphIndex {
+    private static final String LOAD_QUERY =
+            "SELECT receiver, sender " +
+            "FROM friends " +
+            "ORDER BY receiver, sender";
+
+    private final JdbcTemplate jdbc;
+    private final SortedIdSets friendsByUser = new SortedIdSets();
+
+    public FriendGraphIndex(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    @PostConstruct
+    public void reload() {
+        friendsByUser.load(jdbc, LOAD_QUERY);
+        log.info("Граф дружбы загружен, пользователей с друзьями: {}", friendsByUser.keyCount());
+    }
+
+    public boolean contains(long userId, long friendId) {
+        return friendsByUser.contains(userId, friendId);
+    }
+
+    public boolean add(long userId, long friendId) {
+        return friendsByUser.add(userId, friendId);
+    }
+
+    public boolean remove(long userId, long friendId) {
+        return friendsByUser.remove(userId, friendId);
+    }
+
+    public long[] getFriendIds(long userId) {
+        return friendsByUser.get(userId).clone();
+    }
+
+    public long[] getCommonFriendIds(long userId, long otherId) {
+        return SortedIdSets.intersect(friendsByUser.get(userId), friendsByUser.get(otherId));
+    }
+
+    // Кандидаты — друзья друзей, ранжированные по числу общих друзей. Друзья с более чем fanOutCap
+    // друзьями не раскрываются, а у самого пользователя берутся первые fanOutCap друзей, поэтому
+    // обход ограничен fanOutCap^2 шагами даже для очень популярных пользователей
+    public long[] getSuggestedFriendIds(long userId, int limit, int fanOutCap) {
+        long[] friends = friendsByUser.get(userId);
+        int expanded = Math.min(friends.length, fanOutCap);
+        LongIntCounter mutualCounts = new LongIntCounter(expanded * 4);
+        for (int i = 0; i < expanded; i++) {
+            long[] friendsOfFriend = friendsByUser.get(friends[i]);
+            if (friendsOfFriend.length > fanOutCap) {
+                continue;
+            }
+            for (long candidate : friendsOfFriend) {
+                if (candidate != userId && Arrays.binarySearch(friends, candidate) < 0) {
+                    mutualCounts.increment(candidate);
+                }
+            }
+        }
+        return mutualCounts.topKeys(limit);
+    }
+}
@@ -0,0 +1,81 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.function.LongPredicate;
+
+/**
+ * Рейтинг фильмов по счетчику: при равенстве выше фильм с меньшим id. Изменение счетчика стоит O(log n),
+ * выборка топ-N — O(N). Не потокобезопасен, синхронизация остается за владельцем.
+ */
+class Leaderboard {
+    private static final Comparator<Entry> BY_SCORE = Comparator
+            .comparingLong(Entry::score).reversed()
+            .thenComparingLong(Entry::filmId);
+
+    private final Map<Long, Entry> entriesByFilm = new HashMap<>();
+    private final NavigableSet<Entry> ranking = new TreeSet<>(BY_SCORE);
+
+    boolean contains(long filmId) {
+        return entriesByFilm.containsKey(filmId);
+    }
+
+    long score(long filmId) {
+        Entry entry = entriesByFilm.get(filmId);
+        return entry == null ? 0 : entry.score();
+    }
+
+    int size() {
+        return entriesByFilm.size();
+    }
+
+    void put(long filmId, long score) {
+        remove(filmId);
+        Entry entry = new Entry(filmId, score);
+        entriesByFilm.put(filmId, entry);
+        ranking.add(entry);
+    }
+
+    // Счетчик не опускается ниже нуля
+    void add(long filmId, long delta) {
+        put(filmId, Math.max(0, score(filmId) + delta));
+    }
+
+    void remove(long filmId) {
+        Entry entry = entriesByFilm.remove(filmId);
+        if (entry != null) {
+            ranking.remove(entry);
+        }
+    }
+
+    void clear() {
+        entriesByFilm.clear();
+        ranking.clear();
+    }
+
+    List<Long> top(int count) {
+        return top(count, filmId -> true);
+    }
+
+    // Первые count фильмов рейтинга, прошедших фильтр
+    List<Long> top(int count, LongPredicate filter) {
+        List<Long> filmIds = new ArrayList<>(Math.max(0, Math.min(count, size())));
+        Iterator<Entry> iterator = ranking.iterator();
+        while (filmIds.size() < count && iterator.hasNext()) {
+            long filmId = iterator.next().filmId();
+            if (filter.test(filmId)) {
+                filmIds.add(filmId);
+            }
+        }
+        return filmIds;
+    }
+
+    private record Entry(long filmId, long score) {
+    }
+}
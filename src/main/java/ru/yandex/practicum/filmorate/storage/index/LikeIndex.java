@@ -0,0 +1,134 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Множество поставленных лайков в памяти. Пара (фильм, пользователь) упаковывается в один long,
+ * множество разбито на {@link #STRIPES} частей, каждая под своей блокировкой: изменения одной пары
+ * выполняются последовательно, а разные пары почти всегда попадают в разные части и не мешают друг другу.
+ * Блокировка части держится только на время операции с множеством и никогда во время запросов к базе,
+ * поэтому не образует цикла с блокировками строк в одиночной и пакетной записи лайков.
+ */
+@Slf4j
+@Component
+public class LikeIndex {
+    private static final String LOAD_QUERY =
+            "SELECT film_id, user_id " +
+            "FROM likes";
+    private static final int STRIPES = 64;
+    private static final int STRIPE_SHIFT = Long.SIZE - Integer.numberOfTrailingZeros(STRIPES);
+    private static final long MAX_ID = Integer.MAX_VALUE;
+
+    private final JdbcTemplate jdbc;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    public LikeIndex(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+        for (int idx = 0; idx < STRIPES; idx++) {
+            stripes[idx] = new Stripe();
+        }
+    }
+
+    @PostConstruct
+    public void reload() {
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+        }
+        try {
+            for (Stripe stripe : stripes) {
+                stripe.likes.clear();
+            }
+            jdbc.query(LOAD_QUERY, rs -> {
+                long key = pack(rs.getLong("film_id"), rs.getLong("user_id"));
+                stripe(key).likes.add(key);
+            });
+        } finally {
+            for (Stripe stripe : stripes) {
+                stripe.lock.unlock();
+            }
+        }
+        log.info("Множество лайков загружено, лайков: {}", size());
+    }
+
+    public boolean contains(long filmId, long userId) {
+        if (!fits(filmId, userId)) {
+            return false;
+        }
+        long key = pack(filmId, userId);
+        Stripe stripe = stripe(key);
+        stripe.lock.lock();
+        try {
+            return stripe.likes.contains(key);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    public boolean add(long filmId, long userId) {
+        long key = pack(filmId, userId);
+        Stripe stripe = stripe(key);
+        stripe.lock.lock();
+        try {
+            return stripe.likes.add(key);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    public boolean remove(long filmId, long userId) {
+        if (!fits(filmId, userId)) {
+            return false;
+        }
+        long key = pack(filmId, userId);
+        Stripe stripe = stripe(key);
+        stripe.lock.lock();
+        try {
+            return stripe.likes.remove(key);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    public long size() {
+        long size = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                size += stripe.likes.size();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    private Stripe stripe(long key) {
+        return stripes[(int) (LongHashSet.mix(key) >>> STRIPE_SHIFT)];
+    }
+
+    // Пара с идентификатором вне 31 бита не может быть в множестве: проверка и удаление считают ее
+    // непоставленным лайком, а добавлять такую пару вызывающий код не должен
+    public static boolean fits(long filmId, long userId) {
+        return filmId >= 0 && filmId <= MAX_ID && userId >= 0 && userId <= MAX_ID;
+    }
+
+    // Фильм в старших 32 битах, пользователь в младших
+    static long pack(long filmId, long userId) {
+        if (!fits(filmId, userId)) {
+            throw new IllegalArgumentException(
+                    String.format("Идентификаторы фильма %d и пользователя %d не помещаются в 31 бит", filmId, userId)
+            );
+        }
+        return filmId << Integer.SIZE | userId;
+    }
+
+    private static class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LongHashSet likes = new LongHashSet();
+    }
+}
@@ -0,0 +1,112 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Множество примитивных long на открытой адресации с линейным пробированием.
+ * Значение -1 зарезервировано под свободную ячейку: его нет в множестве и добавить его нельзя.
+ * Потокобезопасность обеспечивает вызывающий код.
+ */
+class LongHashSet {
+    private static final long FREE = -1;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private int mask;
+    private int size;
+
+    LongHashSet() {
+        allocate(16);
+    }
+
+    boolean contains(long key) {
+        return key != FREE && keys[slot(key)] == key;
+    }
+
+    boolean add(long key) {
+        if (key == FREE) {
+            throw new IllegalArgumentException("Значение " + FREE + " зарезервировано под свободную ячейку");
+        }
+        int slot = slot(key);
+        if (keys[slot] == key) {
+            return false;
+        }
+        keys[slot] = key;
+        if (++size > keys.length * LOAD_FACTOR) {
+            rehash(keys.length * 2);
+        }
+        return true;
+    }
+
+    // Удаление со сдвигом последующих ключей цепочки, чтобы не оставлять надгробий
+    boolean remove(long key) {
+        if (key == FREE) {
+            return false;
+        }
+        int slot = slot(key);
+        if (keys[slot] != key) {
+            return false;
+        }
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (keys[next] != FREE) {
+            int home = (int) mix(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = FREE;
+        size--;
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void forEach(LongConsumer consumer) {
+        for (long key : keys) {
+            if (key != FREE) {
+                consumer.accept(key);
+            }
+        }
+    }
+
+    void clear() {
+        allocate(16);
+    }
+
+    private int slot(long key) {
+        int slot = (int) mix(key) & mask;
+        while (keys[slot] != FREE && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        allocate(capacity);
+        for (long key : oldKeys) {
+            if (key != FREE) {
+                keys[slot(key)] = key;
+                size++;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, FREE);
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    static long mix(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 32);
+    }
+}
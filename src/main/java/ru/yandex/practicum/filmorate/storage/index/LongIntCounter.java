@@ -0,0 +1,148 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * Счетчик по ключам long на открытой адресации без упаковки в объекты, годится и как отображение long -> int.
+ * Ключи должны быть неотрицательными: свободная ячейка отмечается значением -1.
+ */
+class LongIntCounter {
+    private static final long FREE = -1;
+    private static final float LOAD_FACTOR = 0.5f;
+    private static final Comparator<Entry> BY_RANK = Comparator
+            .comparingInt(Entry::count).reversed()
+            .thenComparingLong(Entry::key);
+
+    private long[] keys;
+    private int[] counts;
+    private int mask;
+    private int size;
+
+    LongIntCounter(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    void increment(long key) {
+        add(key, 1);
+    }
+
+    void add(long key, int delta) {
+        int slot = slot(key);
+        if (keys[slot] == FREE) {
+            keys[slot] = key;
+            size++;
+            if (size > keys.length * LOAD_FACTOR) {
+                rehash();
+                slot = slot(key);
+            }
+        }
+        counts[slot] += delta;
+    }
+
+    void put(long key, int count) {
+        add(key, count - get(key));
+    }
+
+    boolean contains(long key) {
+        return keys[slot(key)] != FREE;
+    }
+
+    // Удаление со сдвигом последующих ключей цепочки, как в LongHashSet
+    boolean remove(long key) {
+        int slot = slot(key);
+        if (keys[slot] == FREE) {
+            return false;
+        }
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (keys[next] != FREE) {
+            int home = (int) LongHashSet.mix(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                counts[gap] = counts[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = FREE;
+        counts[gap] = 0;
+        size--;
+        return true;
+    }
+
+    int get(long key) {
+        int slot = slot(key);
+        return keys[slot] == FREE ? 0 : counts[slot];
+    }
+
+    void addAll(LongIntCounter other) {
+        other.forEach(this::add);
+    }
+
+    int size() {
+        return size;
+    }
+
+    void forEach(Consumer consumer) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != FREE) {
+                consumer.accept(keys[slot], counts[slot]);
+            }
+        }
+    }
+
+    // Не более limit ключей с наибольшими счетчиками; при равенстве выше ключ с меньшим значением
+    long[] topKeys(int limit) {
+        PriorityQueue<Entry> top = new PriorityQueue<>(limit + 1, BY_RANK.reversed());
+        forEach((key, count) -> {
+            top.add(new Entry(key, count));
+            if (top.size() > limit) {
+                top.poll();
+            }
+        });
+        long[] ranked = new long[top.size()];
+        for (int i = ranked.length - 1; i >= 0; i--) {
+            ranked[i] = top.poll().key();
+        }
+        return ranked;
+    }
+
+    private int slot(long key) {
+        int slot = (int) LongHashSet.mix(key) & mask;
+        while (keys[slot] != FREE && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        allocate(oldKeys.length * 2);
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] != FREE) {
+                int newSlot = slot(oldKeys[slot]);
+                keys[newSlot] = oldKeys[slot];
+                counts[newSlot] = oldCounts[slot];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        counts = new int[capacity];
+        mask = capacity - 1;
+        Arrays.fill(keys, FREE);
+    }
+
+    private record Entry(long key, int count) {
+    }
+
+    @FunctionalInterface
+    interface Consumer {
+        void accept(long key, int count);
+    }
+}
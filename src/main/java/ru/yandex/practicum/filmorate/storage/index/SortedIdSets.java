@@ -0,0 +1,142 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Отображение id -> отсортированный массив id. Массивы не изменяются после публикации, запись заменяет
+ * массив целиком, поэтому чтение не требует блокировок. Возвращаемые массивы изменять нельзя.
+ */
+class SortedIdSets {
+    static final long[] EMPTY = new long[0];
+
+    private volatile Map<Long, long[]> setsByKey = new ConcurrentHashMap<>();
+
+    // Запрос должен возвращать пары (ключ, значение) в первых двух колонках, упорядоченные по ним же
+    void load(JdbcTemplate jdbc, String query) {
+        Loader loader = new Loader();
+        jdbc.query(query, loader);
+        setsByKey = loader.finish();
+    }
+
+    int keyCount() {
+        return setsByKey.size();
+    }
+
+    long[] get(long key) {
+        return setsByKey.getOrDefault(key, EMPTY);
+    }
+
+    boolean contains(long key, long value) {
+        return Arrays.binarySearch(get(key), value) >= 0;
+    }
+
+    boolean add(long key, long value) {
+        boolean[] added = new boolean[1];
+        setsByKey.compute(key, (id, values) -> {
+            long[] current = values == null ? EMPTY : values;
+            int pos = Arrays.binarySearch(current, value);
+            if (pos >= 0) {
+                return values;
+            }
+            int insertAt = -pos - 1;
+            long[] updated = new long[current.length + 1];
+            System.arraycopy(current, 0, updated, 0, insertAt);
+            updated[insertAt] = value;
+            System.arraycopy(current, insertAt, updated, insertAt + 1, current.length - insertAt);
+            added[0] = true;
+            return updated;
+        });
+        return added[0];
+    }
+
+    boolean remove(long key, long value) {
+        boolean[] removed = new boolean[1];
+        setsByKey.computeIfPresent(key, (id, values) -> {
+            int pos = Arrays.binarySearch(values, value);
+            if (pos < 0) {
+                return values;
+            }
+            removed[0] = true;
+            if (values.length == 1) {
+                return null;
+            }
+            long[] updated = new long[values.length - 1];
+            System.arraycopy(values, 0, updated, 0, pos);
+            System.arraycopy(values, pos + 1, updated, pos, values.length - pos - 1);
+            return updated;
+        });
+        return removed[0];
+    }
+
+    // Значения ключа, большие after, не более limit штук
+    long[] page(long key, long after, int limit) {
+        long[] values = get(key);
+        int pos = Arrays.binarySearch(values, after);
+        int from = pos >= 0 ? pos + 1 : -pos - 1;
+        return Arrays.copyOfRange(values, from, Math.min(values.length, from + Math.max(0, limit)));
+    }
+
+    static long[] intersect(long[] first, long[] second) {
+        long[] common = new long[Math.min(first.length, second.length)];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                common[size++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(common, size);
+    }
+
+    // Строки приходят отсортированными по ключу и значению, поэтому массив каждого ключа
+    // собирается за один проход без сортировки
+    private static class Loader implements RowCallbackHandler {
+        private final Map<Long, long[]> setsByKey = new ConcurrentHashMap<>();
+        private long key;
+        private long[] buffer = new long[16];
+        private int size;
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            long rowKey = rs.getLong(1);
+            long value = rs.getLong(2);
+            if (size > 0 && rowKey != key) {
+                flush();
+            }
+            key = rowKey;
+            if (size > 0 && buffer[size - 1] == value) {
+                return;
+            }
+            if (size == buffer.length) {
+                buffer = Arrays.copyOf(buffer, size * 2);
+            }
+            buffer[size++] = value;
+        }
+
+        Map<Long, long[]> finish() {
+            if (size > 0) {
+                flush();
+            }
+            return setsByKey;
+        }
+
+        private void flush() {
+            setsByKey.put(key, Arrays.copyOf(buffer, size));
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Тренды: рейтинги фильмов по лайкам за последний час, сутки и неделю. Лайки последней недели разложены
+ * по поминутным корзинам кольцевого буфера. Когда минута выпадает из окна, лайки ее корзины вычитаются
+ * из рейтинга этого окна, поэтому лайк, снятие лайка и смена минуты стоят O(log n) на событие,
+ * а таблица likes читается только при загрузке.
+ * Фильмы разбиты на {@link #PARTITIONS} частей со своими корзинами, рейтингами и блокировкой: лайки разных
+ * фильмов почти всегда попадают в разные части и не ждут друг друга, а вершина рейтинга собирается из вершин частей.
+ */
+@Slf4j
+@Component
+public class TrendingFilmsIndex {
+    private static final String LOAD_QUERY =
+            "SELECT film_id, user_id, created_at " +
+            "FROM likes " +
+            "WHERE created_at >= DATEADD(DAY, -7, LOCALTIMESTAMP)";
+    private static final int BUCKETS = TrendingWindow.WEEK.getMinutes();
+    private static final long MINUTE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final int PARTITIONS = 16;
+    private static final int PARTITION_SHIFT = Long.SIZE - Integer.numberOfTrailingZeros(PARTITIONS);
+    private static final Comparator<long[]> BY_LIKES = Comparator.<long[]>comparingLong(entry -> entry[1]).reversed()
+            .thenComparingLong(entry -> entry[0]);
+
+    private final JdbcTemplate jdbc;
+    private final Partition[] partitions = new Partition[PARTITIONS];
+
+    public TrendingFilmsIndex(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+        for (int idx = 0; idx < PARTITIONS; idx++) {
+            partitions[idx] = new Partition();
+        }
+    }
+
+    @PostConstruct
+    public void reload() {
+        for (Partition partition : partitions) {
+            partition.lock.lock();
+        }
+        try {
+            long now = nowMinute();
+            for (Partition partition : partitions) {
+                partition.clear(now);
+            }
+            jdbc.query(LOAD_QUERY, rs -> {
+                long filmId = rs.getLong("film_id");
+                partition(filmId).record(filmId, rs.getLong("user_id"),
+                        rs.getTimestamp("created_at").getTime() / MINUTE_MILLIS);
+            });
+            log.info("Тренды загружены, лайков за неделю: {}",
+                    Arrays.stream(partitions).mapToInt(partition -> partition.likeMinutes.size()).sum());
+        } finally {
+            for (Partition partition : partitions) {
+                partition.lock.unlock();
+            }
+        }
+    }
+
+    public void like(long filmId, long userId) {
+        Partition partition = partition(filmId);
+        partition.lock.lock();
+        try {
+            partition.advance(nowMinute());
+            partition.record(filmId, userId, partition.currentMinute);
+        } finally {
+            partition.lock.unlock();
+        }
+    }
+
+    public void unlike(long filmId, long userId) {
+        Partition partition = partition(filmId);
+        partition.lock.lock();
+        try {
+            partition.advance(nowMinute());
+            partition.unrecord(filmId, userId);
+        } finally {
+            partition.lock.unlock();
+        }
+    }
+
+    // Каждая часть отдает свои первые count фильмов с числом лайков, из них выбираются общие первые count
+    public List<Long> getTopFilmIds(TrendingWindow window, int count) {
+        long now = nowMinute();
+        List<long[]> candidates = new ArrayList<>();
+        for (Partition partition : partitions) {
+            partition.lock.lock();
+            try {
+                partition.advance(now);
+                Leaderboard ranking = partition.rankings.get(window);
+                for (long filmId : ranking.top(count)) {
+                    candidates.add(new long[]{filmId, ranking.score(filmId)});
+                }
+            } finally {
+                partition.lock.unlock();
+            }
+        }
+        return candidates.stream()
+                .sorted(BY_LIKES)
+                .limit(Math.max(0, count))
+                .map(entry -> entry[0])
+                .toList();
+    }
+
+    private Partition partition(long filmId) {
+        return partitions[(int) (LongHashSet.mix(filmId) >>> PARTITION_SHIFT)];
+    }
+
+    private static int slot(long minute) {
+        return Math.floorMod(minute, BUCKETS);
+    }
+
+    private static long nowMinute() {
+        return System.currentTimeMillis() / MINUTE_MILLIS;
+    }
+
+    private static class Partition {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LongHashSet[] buckets = new LongHashSet[BUCKETS];
+        private final Map<TrendingWindow, Leaderboard> rankings = new EnumMap<>(TrendingWindow.class);
+        // Минута каждого лайка последней недели, чтобы снятие лайка нашло его корзину
+        private LongIntCounter likeMinutes = new LongIntCounter(16);
+        private long currentMinute;
+
+        private Partition() {
+            for (TrendingWindow window : TrendingWindow.values()) {
+                rankings.put(window, new Leaderboard());
+            }
+        }
+
+        // Лайки старше недели пропускаются, а лайки из будущего (часы базы и приложения расходятся)
+        // относятся к текущей минуте
+        private void record(long filmId, long userId, long minute) {
+            if (minute <= currentMinute - BUCKETS) {
+                return;
+            }
+            long likeMinute = Math.min(minute, currentMinute);
+            long key = LikeIndex.pack(filmId, userId);
+            if (likeMinutes.contains(key)) {
+                return;
+            }
+            likeMinutes.put(key, (int) likeMinute);
+            int slot = slot(likeMinute);
+            if (buckets[slot] == null) {
+                buckets[slot] = new LongHashSet();
+            }
+            buckets[slot].add(key);
+            for (TrendingWindow window : TrendingWindow.values()) {
+                if (likeMinute > currentMinute - window.getMinutes()) {
+                    adjust(window, filmId, 1);
+                }
+            }
+        }
+
+        private void unrecord(long filmId, long userId) {
+            long key = LikeIndex.pack(filmId, userId);
+            if (!likeMinutes.contains(key)) {
+                return;
+            }
+            long minute = likeMinutes.get(key);
+            likeMinutes.remove(key);
+            buckets[slot(minute)].remove(key);
+            for (TrendingWindow window : TrendingWindow.values()) {
+                if (minute > currentMinute - window.getMinutes()) {
+                    adjust(window, filmId, -1);
+                }
+            }
+        }
+
+        // С каждой новой минутой из окна выпадает минута, отстоящая от нее на длину окна. Из недельного окна
+        // выпадает минута, чью корзину займет новая, поэтому корзина освобождается
+        private void advance(long now) {
+            if (now <= currentMinute) {
+                return;
+            }
+            if (now - currentMinute >= BUCKETS) {
+                clear(now);
+                return;
+            }
+            while (currentMinute < now) {
+                currentMinute++;
+                for (TrendingWindow window : TrendingWindow.values()) {
+                    LongHashSet bucket = buckets[slot(currentMinute - window.getMinutes())];
+                    if (bucket != null) {
+                        bucket.forEach(key -> adjust(window, key >>> Integer.SIZE, -1));
+                    }
+                }
+                LongHashSet expired = buckets[slot(currentMinute)];
+                if (expired != null) {
+                    expired.forEach(likeMinutes::remove);
+                    buckets[slot(currentMinute)] = null;
+                }
+            }
+        }
+
+        private void adjust(TrendingWindow window, long filmId, int delta) {
+            Leaderboard ranking = rankings.get(window);
+            ranking.add(filmId, delta);
+            if (ranking.score(filmId) == 0) {
+                ranking.remove(filmId);
+            }
+        }
+
+        private void clear(long now) {
+            Arrays.fill(buckets, null);
+            rankings.values().forEach(Leaderboard::clear);
+            likeMinutes = new LongIntCounter(16);
+            currentMinute = now;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Окна трендов и их обозначения в запросах.
+ */
+public enum TrendingWindow {
+    HOUR("1h", 60),
+    DAY("24h", 24 * 60),
+    WEEK("7d", 7 * 24 * 60);
+
+    private final String code;
+    private final int minutes;
+
+    TrendingWindow(String code, int minutes) {
+        this.code = code;
+        this.minutes = minutes;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public int getMinutes() {
+        return minutes;
+    }
+
+    public static Optional<TrendingWindow> fromCode(String code) {
+        return Arrays.stream(values())
+                .filter(window -> window.code.equals(code))
+                .findFirst();
+    }
+}
@@ -0,0 +1,71 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Множество id существующих пользователей в памяти: проверка пользователя на каждый лайк
+ * не обращается к базе. Пользователи не удаляются, поэтому id убираются только при откате добавления.
+ */
+@Slf4j
+@Component
+public class UserIdIndex {
+    private static final String LOAD_QUERY =
+            "SELECT id " +
+            "FROM users";
+
+    private final JdbcTemplate jdbc;
+    private final LongHashSet ids = new LongHashSet();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public UserIdIndex(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    // Загрузка идет под блокировкой записи, чтобы не потерять пользователя, добавленного во время чтения
+    @PostConstruct
+    public void reload() {
+        lock.writeLock().lock();
+        try {
+            ids.clear();
+            jdbc.query(LOAD_QUERY, rs -> {
+                ids.add(rs.getLong("id"));
+            });
+            log.info("Идентификаторы пользователей загружены, пользователей: {}", ids.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean contains(long userId) {
+        lock.readLock().lock();
+        try {
+            return ids.contains(userId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void add(long userId) {
+        lock.writeLock().lock();
+        try {
+            ids.add(userId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long userId) {
+        lock.writeLock().lock();
+        try {
+            ids.remove(userId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongConsumer;
+
+/**
+ * Лайки пользователей в памяти: для каждого пользователя хранится отсортированный массив id фильмов,
+ * которым он поставил лайк, а для каждого фильма — множество id поставивших лайк пользователей.
+ * Обновляется {@code LikeRepository} при каждой записи лайка.
+ *
+ * <p>У популярного фильма миллионы лайков, поэтому его множество изменяется на месте, а не копируется
+ * при каждом лайке; доступ к множеству синхронизирован по нему самому.
+ */
+@Slf4j
+@Component
+public class UserLikesIndex {
+    private static final String LOAD_QUERY =
+            "SELECT user_id, film_id " +
+            "FROM likes " +
+            "ORDER BY user_id, film_id";
+    private static final String LOAD_BY_FILM_QUERY =
+            "SELECT film_id, user_id " +
+            "FROM likes " +
+            "ORDER BY film_id, user_id";
+
+    private final JdbcTemplate jdbc;
+    private final SortedIdSets filmsByUser = new SortedIdSets();
+    private volatile Map<Long, LongHashSet> usersByFilm = new ConcurrentHashMap<>();
+
+    public UserLikesIndex(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    @PostConstruct
+    public void reload() {
+        filmsByUser.load(jdbc, LOAD_QUERY);
+        Map<Long, LongHashSet> loaded = new ConcurrentHashMap<>();
+        jdbc.query(LOAD_BY_FILM_QUERY, rs -> {
+            loaded.computeIfAbsent(rs.getLong("film_id"), id -> new LongHashSet()).add(rs.getLong("user_id"));
+        });
+        usersByFilm = loaded;
+        log.info("Лайки пользователей загружены, пользователей с лайками: {}", filmsByUser.keyCount());
+    }
+
+    public boolean add(long userId, long filmId) {
+        usersByFilm.compute(filmId, (id, likers) -> {
+            LongHashSet updated = likers == null ? new LongHashSet() : likers;
+            synchronized (updated) {
+                updated.add(userId);
+            }
+            return updated;
+        });
+        return filmsByUser.add(userId, filmId);
+    }
+
+    public boolean remove(long userId, long filmId) {
+        usersByFilm.computeIfPresent(filmId, (id, likers) -> {
+            synchronized (likers) {
+                likers.remove(userId);
+                return likers.size() == 0 ? null : likers;
+            }
+        });
+        return filmsByUser.remove(userId, filmId);
+    }
+
+    // Страница фильмов пользователя в порядке id: фильмы с id больше afterFilmId, не более limit штук
+    public long[] getLikedFilmIds(long userId, long afterFilmId, int limit) {
+        return filmsByUser.page(userId, afterFilmId, limit);
+    }
+
+    // Внутренний массив для расчета рекомендаций, изменять его нельзя
+    long[] likedFilms(long userId) {
+        return filmsByUser.get(userId);
+    }
+
+    int likerCount(long filmId) {
+        LongHashSet likers = usersByFilm.get(filmId);
+        if (likers == null) {
+            return 0;
+        }
+        synchronized (likers) {
+            return likers.size();
+        }
+    }
+
+    // Обход идет под блокировкой множества фильма, поэтому consumer не должен обращаться к этому индексу
+    void forEachLiker(long filmId, LongConsumer consumer) {
+        LongHashSet likers = usersByFilm.get(filmId);
+        if (likers == null) {
+            return;
+        }
+        synchronized (likers) {
+            likers.forEach(consumer);
+        }
+    }
+}
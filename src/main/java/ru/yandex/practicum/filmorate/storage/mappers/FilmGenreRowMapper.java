@@ -0,0 +1,19 @@
+package ru.yandex.practicum.filmorate.storage.mappers;
+
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.FilmGenre;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+@Component
+public class FilmGenreRowMapper implements RowMapper<FilmGenre> {
+    @Override
+    public FilmGenre mapRow(ResultSet rs, int rowNum) throws SQLException {
+        FilmGenre filmGenre = new FilmGenre();
+        filmGenre.setFilmId(rs.getLong("film_id"));
+        filmGenre.setGenreId(rs.getLong("genre_id"));
+        return filmGenre;
+    }
+}
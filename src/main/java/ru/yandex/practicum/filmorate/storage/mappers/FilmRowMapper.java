@@ -4,12 +4,19 @@ import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataRegistry;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.LocalDate;
 
 @Component
 public class FilmRowMapper implements RowMapper<Film> {
+    private final ReferenceDataRegistry referenceData;
+
+    public FilmRowMapper(ReferenceDataRegistry referenceData) {
+        this.referenceData = referenceData;
+    }
 
     @Override
     public Film mapRow(ResultSet resultSet, int rowNum) throws SQLException {
@@ -17,12 +24,12 @@ public class FilmRowMapper implements RowMapper<Film> {
         film.setId(resultSet.getLong("id"));
         film.setName(resultSet.getString("name"));
         film.setDescription(resultSet.getString("description"));
-        film.setReleaseDate(resultSet.getDate("release_date").toLocalDate());
+        film.setReleaseDate(resultSet.getObject("release_date", LocalDate.class));
         film.setDuration(resultSet.getInt("duration"));
-        if (resultSet.getLong("rating_id") != 0) {
-            MpaRating mpaRating = new MpaRating();
-            mpaRating.setId(resultSet.getLong("rating_id"));
-            mpaRating.setName(resultSet.getString("rating_name"));
+        long ratingId = resultSet.getLong("rating_id");
+        if (ratingId != 0) {
+            MpaRating mpaRating = referenceData.getRating(ratingId)
+                    .orElseGet(() -> new MpaRating(ratingId, null));
             film.setMpaRating(mpaRating);
         }
         return film;
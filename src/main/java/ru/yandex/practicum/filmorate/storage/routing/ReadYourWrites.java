@@ -0,0 +1,65 @@
+package ru.yandex.practicum.filmorate.storage.routing;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Чтение своих записей: после записи клиента его чтения в течение окна идут в основную базу, а не в реплику,
+ * которая могла еще не получить изменения. Окно должно превышать задержку репликации.
+ * Клиент привязывается к текущему потоку на время обработки запроса. Истекшие записи удаляются при чтении
+ * клиента и не реже раза в окно при чужих записях, поэтому в памяти остаются в основном клиенты текущего окна.
+ */
+public class ReadYourWrites {
+    private final long windowNanos;
+    private final int maxClients;
+    private final Map<String, Long> lastWrites = new ConcurrentHashMap<>();
+    private final ThreadLocal<String> currentClient = new ThreadLocal<>();
+    private final AtomicLong nextSweepAt;
+
+    public ReadYourWrites(Duration window, int maxClients) {
+        this.windowNanos = window.toNanos();
+        this.maxClients = maxClients;
+        this.nextSweepAt = new AtomicLong(System.nanoTime() + windowNanos);
+    }
+
+    public void bind(String client) {
+        currentClient.set(client);
+    }
+
+    public void unbind() {
+        currentClient.remove();
+    }
+
+    public void markWrite(String client) {
+        long now = System.nanoTime();
+        long sweepAt = nextSweepAt.get();
+        boolean sweepDue = now - sweepAt >= 0 && nextSweepAt.compareAndSet(sweepAt, now + windowNanos);
+        if (sweepDue || lastWrites.size() >= maxClients) {
+            lastWrites.values().removeIf(writtenAt -> now - writtenAt >= windowNanos);
+        }
+        lastWrites.put(client, now);
+    }
+
+    // Текущий клиент недавно писал, и его чтения должны видеть эти записи
+    public boolean isPinnedToPrimary() {
+        String client = currentClient.get();
+        if (client == null) {
+            return false;
+        }
+        Long writtenAt = lastWrites.get(client);
+        if (writtenAt == null) {
+            return false;
+        }
+        if (System.nanoTime() - writtenAt < windowNanos) {
+            return true;
+        }
+        lastWrites.remove(client, writtenAt);
+        return false;
+    }
+
+    int size() {
+        return lastWrites.size();
+    }
+}
@@ -0,0 +1,61 @@
+package ru.yandex.practicum.filmorate.storage.routing;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.security.Principal;
+import java.util.Set;
+
+/**
+ * Привязывает клиента к потоку запроса и отмечает его записи. Клиент определяется заголовком
+ * {@value #CLIENT_HEADER}, а без него — аутентифицированным пользователем. Адрес не подходит: за прокси
+ * или NAT запись одного клиента направила бы в основную базу всех. Запросы без клиента читают из реплики.
+ * Запись отмечается и до обработки, и после нее: чтение, начатое сразу после ответа, тоже попадет
+ * в основную базу.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+    static final String CLIENT_HEADER = "X-Client-Id";
+    private static final Set<String> WRITE_METHODS = Set.of("POST", "PUT", "PATCH", "DELETE");
+
+    private final ReadYourWrites readYourWrites;
+
+    public ReadYourWritesFilter(ReadYourWrites readYourWrites) {
+        this.readYourWrites = readYourWrites;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String client = client(request);
+        if (client == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        boolean write = WRITE_METHODS.contains(request.getMethod());
+        if (write) {
+            readYourWrites.markWrite(client);
+        }
+        readYourWrites.bind(client);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            readYourWrites.unbind();
+            if (write) {
+                readYourWrites.markWrite(client);
+            }
+        }
+    }
+
+    private String client(HttpServletRequest request) {
+        String client = request.getHeader(CLIENT_HEADER);
+        if (client != null && !client.isBlank()) {
+            return client;
+        }
+        Principal principal = request.getUserPrincipal();
+        return principal == null ? null : principal.getName();
+    }
+}
@@ -1,3 +1,11 @@
+-- Версии схемы: каждый блок ниже идемпотентен, а номер версии записывается после его применения
+CREATE TABLE IF NOT EXISTS schema_version (
+    version INTEGER PRIMARY KEY,
+    description VARCHAR NOT NULL,
+    applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Версия 1: исходные таблицы
 CREATE TABLE IF NOT EXISTS users (
     id BIGINT PRIMARY KEY AUTO_INCREMENT,
     email VARCHAR UNIQUE NOT NULL,
@@ -27,9 +35,14 @@ CREATE TABLE IF NOT EXISTS films (
     release_date DATE,
     duration INTEGER NOT NULL,
     rating_id BIGINT,
+    like_count BIGINT NOT NULL DEFAULT 0,
     FOREIGN KEY (rating_id) REFERENCES ratings(id)
 );
 
+-- Счетчик лайков для баз, созданных до его появления
+ALTER TABLE films ADD COLUMN IF NOT EXISTS like_count BIGINT NOT NULL DEFAULT 0;
+CREATE INDEX IF NOT EXISTS films_like_count_idx ON films (like_count DESC, id);
+
 CREATE TABLE IF NOT EXISTS likes (
     id BIGINT PRIMARY KEY AUTO_INCREMENT,
     film_id BIGINT NOT NULL,
@@ -50,3 +63,52 @@ CREATE TABLE IF NOT EXISTS film_genres (
     FOREIGN KEY (film_id) REFERENCES films(id) ON DELETE CASCADE,
     FOREIGN KEY (genre_id) REFERENCES genres(id) ON DELETE CASCADE
 );
+
+MERGE INTO schema_version (version, description) KEY(version)
+VALUES (1, 'Исходные таблицы');
+
+-- Версия 2: уникальность лайков, заявок в друзья и жанров фильма, индексы для выборок по второй колонке.
+-- Дубликаты, накопившиеся до появления ограничений, удаляются только при первом применении версии
+DELETE FROM likes
+WHERE NOT EXISTS (SELECT 1 FROM schema_version WHERE version = 2)
+  AND id NOT IN (SELECT MIN(id) FROM likes GROUP BY film_id, user_id);
+DELETE FROM friends
+WHERE NOT EXISTS (SELECT 1 FROM schema_version WHERE version = 2)
+  AND id NOT IN (SELECT MIN(id) FROM friends GROUP BY sender, receiver);
+DELETE FROM film_genres
+WHERE NOT EXISTS (SELECT 1 FROM schema_version WHERE version = 2)
+  AND id NOT IN (SELECT MIN(id) FROM film_genres GROUP BY film_id, genre_id);
+
+ALTER TABLE likes ADD CONSTRAINT IF NOT EXISTS likes_film_user_uq UNIQUE (film_id, user_id);
+CREATE INDEX IF NOT EXISTS likes_user_idx ON likes (user_id);
+ALTER TABLE friends ADD CONSTRAINT IF NOT EXISTS friends_sender_receiver_uq UNIQUE (sender, receiver);
+CREATE INDEX IF NOT EXISTS friends_receiver_idx ON friends (receiver, sender);
+ALTER TABLE film_genres ADD CONSTRAINT IF NOT EXISTS film_genres_film_genre_uq UNIQUE (film_id, genre_id);
+
+MERGE INTO schema_version (version, description) KEY(version)
+VALUES (2, 'Уникальные ограничения и индексы likes, friends, film_genres');
+
+-- Версия 3: лайки пользователя читаются по индексу в порядке id фильма
+CREATE INDEX IF NOT EXISTS likes_user_film_idx ON likes (user_id, film_id);
+DROP INDEX IF EXISTS likes_user_idx;
+
+MERGE INTO schema_version (version, description) KEY(version)
+VALUES (3, 'Индекс likes (user_id, film_id)');
+
+-- Версия 4: время лайка для трендов. Лайки, поставленные до появления колонки, получают дату в прошлом
+-- и в тренды не попадают
+ALTER TABLE likes ADD COLUMN IF NOT EXISTS created_at TIMESTAMP DEFAULT TIMESTAMP '1970-01-01 00:00:00' NOT NULL;
+ALTER TABLE likes ALTER COLUMN created_at SET DEFAULT LOCALTIMESTAMP;
+CREATE INDEX IF NOT EXISTS likes_created_at_idx ON likes (created_at);
+
+MERGE INTO schema_version (version, description) KEY(version)
+VALUES (4, 'Время создания лайка');
+
+-- Версия 5: пересчет счетчиков лайков. Колонка like_count добавлялась к существующим фильмам со значением 0,
+-- а удаление дубликатов лайков в версии 2 счетчики не уменьшало
+UPDATE films f
+SET like_count = (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.id)
+WHERE NOT EXISTS (SELECT 1 FROM schema_version WHERE version = 5);
+
+MERGE INTO schema_version (version, description) KEY(version)
+VALUES (5, 'Пересчет счетчиков лайков');
@@ -0,0 +1,182 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.FilmRepository;
+import ru.yandex.practicum.filmorate.storage.LikeRepository;
+import ru.yandex.practicum.filmorate.storage.UserRepository;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Пакет из двух строк: результаты нескольких пакетов должны прийти по порядку строк
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = {
+                "spring.datasource.url=jdbc:h2:mem:batch-ingestion;DB_CLOSE_DELAY=-1",
+                "filmorate.batch.chunk-size=2"
+        }
+)
+class BatchIngestionServiceTest {
+    private final BatchIngestionService batchIngestionService;
+    private final FilmRepository filmRepository;
+    private final UserRepository userRepository;
+    private final LikeRepository likeRepository;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    BatchIngestionServiceTest(BatchIngestionService batchIngestionService, FilmRepository filmRepository,
+                              UserRepository userRepository, LikeRepository likeRepository,
+                              ObjectMapper objectMapper) {
+        this.batchIngestionService = batchIngestionService;
+        this.filmRepository = filmRepository;
+        this.userRepository = userRepository;
+        this.likeRepository = likeRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    @Test
+    void shouldReportEachLineWhenImportingFilmsWithErrors() throws IOException {
+        String body = String.join("\n",
+                film("Batch Film A", 1),
+                "{not json",
+                "",
+                film("Batch Film B", 99),
+                film("Batch Film C", 2));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        batchIngestionService.importFilms(input(body), out);
+        List<JsonNode> results = results(out);
+        assertThat(results).extracting(result -> result.get("line").asInt()).containsExactly(1, 2, 4, 5);
+        assertThat(results).extracting(result -> result.get("success").asBoolean())
+                .containsExactly(true, false, false, true);
+        assertThat(results.get(1).get("error").asText()).startsWith("Некорректный JSON");
+        assertThat(results.get(2).get("error").asText()).isEqualTo("Рейтинг с id: 99 отсутствует");
+        assertThat(filmRepository.getFilmById(results.get(0).get("id").asLong()))
+                .hasValueSatisfying(film -> assertThat(film.getName()).isEqualTo("Batch Film A"));
+    }
+
+    @Test
+    void shouldRejectUsedEmailsWhenImportingUsers() throws IOException {
+        String usedEmail = addUser().getEmail();
+        String email = uniqueLogin() + "@example.com";
+        String body = String.join("\n",
+                user(email),
+                user(email),
+                user("not-an-email"),
+                user(usedEmail));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        batchIngestionService.importUsers(input(body), out);
+        List<JsonNode> results = results(out);
+        assertThat(results).extracting(result -> result.get("line").asInt()).containsExactly(1, 2, 3, 4);
+        assertThat(results).extracting(result -> result.get("success").asBoolean())
+                .containsExactly(true, false, false, false);
+        assertThat(results.get(1).get("error").asText()).isEqualTo("Этот email уже используется: " + email);
+        assertThat(results.get(2).get("error").asText()).startsWith("email: ");
+        assertThat(results.get(3).get("error").asText()).isEqualTo("Этот email уже используется: " + usedEmail);
+        assertThat(userRepository.getUserById(results.get(0).get("id").asLong())).isPresent();
+    }
+
+    @Test
+    void shouldSkipInvalidLikesWhenImportingLikes() throws IOException {
+        long filmId = addFilm();
+        long userId = addUser().getId();
+        String body = String.join("\n",
+                like(filmId, userId),
+                like(filmId, userId),
+                like(999_999L, userId),
+                like(filmId, 999_999L),
+                "{\"filmId\": " + filmId + "}");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        batchIngestionService.importLikes(input(body), out);
+        List<JsonNode> results = results(out);
+        assertThat(results).extracting(result -> result.get("line").asInt()).containsExactly(1, 2, 3, 4, 5);
+        assertThat(results).extracting(result -> result.get("success").asBoolean())
+                .containsExactly(true, false, false, false, false);
+        assertThat(results.get(2).get("error").asText()).isEqualTo("Фильм id: 999999 отсутствует");
+        assertThat(results.get(3).get("error").asText()).isEqualTo("Пользователь с id=999999 не найден");
+        assertThat(likeRepository.isLiked(filmId, userId)).isTrue();
+        assertThat(likeRepository.findLikesByFilmId(filmId)).hasSize(1);
+    }
+
+    @Test
+    void shouldReportAlreadyLikedPairWithoutFailingChunk() throws IOException {
+        long filmId = addFilm();
+        long likedUserId = addUser().getId();
+        long userId = addUser().getId();
+        likeRepository.addLike(filmId, likedUserId);
+        String body = String.join("\n",
+                like(filmId, likedUserId),
+                like(filmId, userId));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        batchIngestionService.importLikes(input(body), out);
+        List<JsonNode> results = results(out);
+        assertThat(results).extracting(result -> result.get("success").asBoolean()).containsExactly(false, true);
+        assertThat(results.get(0).get("error").asText())
+                .isEqualTo("Фильму с id = " + filmId + ", уже поставлен лайк пользователем с id = " + likedUserId);
+        assertThat(likeRepository.findLikesByFilmId(filmId)).hasSize(2);
+    }
+
+    private List<JsonNode> results(ByteArrayOutputStream out) throws IOException {
+        List<JsonNode> results = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            results.add(objectMapper.readTree(line));
+        }
+        return results;
+    }
+
+    private static ByteArrayInputStream input(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String film(String name, long mpaId) {
+        return "{\"name\": \"" + name + "\", \"description\": \"Batch\", \"releaseDate\": \"2000-01-01\", " +
+                "\"duration\": 100, \"mpa\": {\"id\": " + mpaId + "}}";
+    }
+
+    private static String user(String email) {
+        return "{\"email\": \"" + email + "\", \"login\": \"" + uniqueLogin() + "\", \"name\": \"Batch User\", " +
+                "\"birthday\": \"2000-01-01\"}";
+    }
+
+    private static String like(long filmId, long userId) {
+        return "{\"filmId\": " + filmId + ", \"userId\": " + userId + "}";
+    }
+
+    private long addFilm() {
+        Film film = new Film();
+        film.setName("Liked Batch Film");
+        film.setDescription("Liked Batch Film Description");
+        film.setReleaseDate(LocalDate.of(2023, 1, 1));
+        film.setDuration(120);
+        film.setMpaRating(new MpaRating(1L, "G"));
+        return filmRepository.addNewFilm(film).getId();
+    }
+
+    private User addUser() {
+        String login = uniqueLogin();
+        User user = new User();
+        user.setEmail(login + "@example.com");
+        user.setName("Batch User");
+        user.setLogin(login);
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+        return userRepository.addNewUser(user);
+    }
+
+    private static String uniqueLogin() {
+        return "batch" + UUID.randomUUID().toString().replace("-", "").substring(0, 12);
+    }
+}
@@ -0,0 +1,55 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.dto.FilmDto;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FilmDtoCacheTest {
+
+    @Test
+    void shouldEvictLeastRecentlyUsedFilmWhenCacheIsFull() {
+        FilmDtoCache cache = new FilmDtoCache(2, Duration.ofMinutes(5));
+        cache.put(film(1L), cache.stamp(1L));
+        cache.put(film(2L), cache.stamp(2L));
+        cache.get(1L);
+        cache.put(film(3L), cache.stamp(3L));
+        assertThat(cache.get(1L)).isPresent();
+        assertThat(cache.get(2L)).isEmpty();
+        assertThat(cache.get(3L)).isPresent();
+    }
+
+    @Test
+    void shouldNotCacheFilmLoadedBeforeInvalidation() {
+        FilmDtoCache cache = new FilmDtoCache(10, Duration.ofMinutes(5));
+        long stamp = cache.stamp(1L);
+        cache.invalidate(1L);
+        cache.put(film(1L), stamp);
+        assertThat(cache.get(1L)).isEmpty();
+    }
+
+    @Test
+    void shouldCacheFilmWhenOtherFilmIsInvalidated() {
+        FilmDtoCache cache = new FilmDtoCache(10, Duration.ofMinutes(5));
+        long stamp = cache.stamp(1L);
+        cache.invalidate(2L);
+        cache.put(film(1L), stamp);
+        assertThat(cache.get(1L)).isPresent();
+    }
+
+    @Test
+    void shouldNotReturnExpiredFilm() {
+        FilmDtoCache cache = new FilmDtoCache(10, Duration.ZERO);
+        cache.put(film(1L), cache.stamp(1L));
+        assertThat(cache.get(1L)).isEmpty();
+    }
+
+    private FilmDto film(Long id) {
+        FilmDto film = new FilmDto();
+        film.setId(id);
+        film.setName("Film " + id);
+        return film;
+    }
+}
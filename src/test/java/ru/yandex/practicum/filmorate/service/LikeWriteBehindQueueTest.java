@@ -0,0 +1,184 @@
+package ru.yandex.practicum.filmorate.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ServiceUnavailableException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.FilmRepository;
+import ru.yandex.practicum.filmorate.storage.LikeRepository;
+import ru.yandex.practicum.filmorate.storage.UserRepository;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.storage.index.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmRecommender;
+import ru.yandex.practicum.filmorate.storage.index.FriendGraphIndex;
+import ru.yandex.practicum.filmorate.storage.index.LikeIndex;
+import ru.yandex.practicum.filmorate.storage.index.TrendingFilmsIndex;
+import ru.yandex.practicum.filmorate.storage.index.UserIdIndex;
+import ru.yandex.practicum.filmorate.storage.index.UserLikesIndex;
+import ru.yandex.practicum.filmorate.storage.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.GenreRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.LikeRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.MpaRatingRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.UserRowMapper;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Очередь пишет лайки из своего потока, поэтому тестовые данные фиксируются, а не откатываются
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({LikeRepository.class, LikeRowMapper.class, FilmRepository.class, FilmRowMapper.class, UserRepository.class,
+        UserRowMapper.class, FriendGraphIndex.class, FilmPopularityIndex.class, LikeIndex.class, UserIdIndex.class,
+        UserLikesIndex.class, FilmRecommender.class, TrendingFilmsIndex.class, ReferenceDataRegistry.class,
+        GenreRowMapper.class, MpaRatingRowMapper.class, FilmDtoCache.class})
+class LikeWriteBehindQueueTest {
+    private static final Duration NEVER = Duration.ofHours(1);
+
+    private final LikeRepository likeRepository;
+    private final FilmRepository filmRepository;
+    private final UserRepository userRepository;
+    private final FilmPopularityIndex popularityIndex;
+    private final UserIdIndex userIds;
+    private final FilmDtoCache filmCache;
+    private final JdbcTemplate jdbc;
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private LikeWriteBehindQueue queue;
+    private Long filmId;
+
+    @BeforeEach
+    void setUp() {
+        Film film = new Film();
+        film.setName("Queued Film");
+        film.setDescription("Queued Film Description");
+        film.setReleaseDate(LocalDate.of(2023, 1, 1));
+        film.setDuration(120);
+        film.setMpaRating(new MpaRating(1L, "G"));
+        filmId = filmRepository.addNewFilm(film).getId();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (queue != null) {
+            queue.shutdown();
+        }
+    }
+
+    @Test
+    void shouldKeepOnlyLastOperationForPair() throws InterruptedException {
+        Long userId = addUser();
+        queue = start(100, Duration.ofSeconds(1));
+        queue.like(filmId, userId);
+        queue.unlike(filmId, userId);
+        queue.like(filmId, userId);
+        assertThat(queue.size()).isEqualTo(1);
+        queue.unlike(filmId, userId);
+        queue.shutdown();
+        queue = null;
+        assertThat(likeRows()).isZero();
+        assertThat(operations("flushed")).isZero();
+        assertThat(operations("skipped")).isEqualTo(1);
+    }
+
+    @Test
+    void shouldRejectNewPairWhenQueueStaysFull() {
+        Long userId = addUser();
+        Long otherId = addUser();
+        queue = start(1, Duration.ofMillis(10));
+        queue.like(filmId, userId);
+        queue.unlike(filmId, userId);
+        assertThatThrownBy(() -> queue.like(filmId, otherId))
+                .isInstanceOf(ServiceUnavailableException.class);
+        assertThat(operations("rejected")).isEqualTo(1);
+    }
+
+    @Test
+    void shouldRejectUnknownUserBeforeQueueing() {
+        queue = start(100, Duration.ofSeconds(1));
+        assertThatThrownBy(() -> queue.like(filmId, 999_999L))
+                .isInstanceOf(NotFoundException.class);
+        assertThat(queue.size()).isZero();
+    }
+
+    @Test
+    void shouldWriteWholeQueueOnShutdown() throws InterruptedException {
+        queue = start(100, Duration.ofSeconds(1));
+        for (int idx = 0; idx < 3; idx++) {
+            queue.like(filmId, addUser());
+        }
+        queue.shutdown();
+        assertThat(likeRows()).isEqualTo(3);
+        assertThat(popularityIndex.getLikeCount(filmId)).isEqualTo(3);
+        assertThat(operations("flushed")).isEqualTo(3);
+        assertThatThrownBy(() -> queue.like(filmId, addUser()))
+                .isInstanceOf(ServiceUnavailableException.class);
+        queue = null;
+    }
+
+    // Пользователь есть в индексе, но не в таблице: пакет падает на внешнем ключе,
+    // и лайки пишутся по одному, чтобы остальные не потерялись
+    @Test
+    void shouldWriteLikesOneByOneWhenBatchFails() throws InterruptedException {
+        Long userId = addUser();
+        long missingUserId = Integer.MAX_VALUE;
+        userIds.add(missingUserId);
+        try {
+            queue = start(100, Duration.ofSeconds(1));
+            queue.like(filmId, userId);
+            queue.like(filmId, missingUserId);
+            queue.shutdown();
+            queue = null;
+        } finally {
+            userIds.remove(missingUserId);
+        }
+        assertThat(likeRows()).isEqualTo(1);
+        assertThat(operations("flushed")).isEqualTo(1);
+        assertThat(operations("failed")).isEqualTo(1);
+    }
+
+    private LikeWriteBehindQueue start(int capacity, Duration offerTimeout) {
+        LikeWriteBehindQueue started = new LikeWriteBehindQueue(likeRepository, userRepository, popularityIndex,
+                filmCache, true, capacity, 1000, NEVER, offerTimeout);
+        started.bindTo(registry);
+        started.start();
+        return started;
+    }
+
+    private Long addUser() {
+        String login = "queued" + UUID.randomUUID().toString().replace("-", "").substring(0, 12);
+        User user = new User();
+        user.setEmail(login + "@example.com");
+        user.setName("Queued User");
+        user.setLogin(login);
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+        return userRepository.addNewUser(user).getId();
+    }
+
+    private double operations(String result) {
+        return registry.get("likes.write_behind.operations").tag("result", result).functionCounter().count();
+    }
+
+    private Long likeRows() {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM likes WHERE film_id = ?", Long.class, filmId);
+    }
+}
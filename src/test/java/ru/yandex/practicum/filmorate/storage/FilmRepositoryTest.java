@@ -7,22 +7,32 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.storage.index.FilmPopularityIndex;
 import ru.yandex.practicum.filmorate.storage.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.GenreRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.MpaRatingRowMapper;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @JdbcTest
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
-@Import({FilmRepository.class, FilmRowMapper.class})
+@Import({FilmRepository.class, FilmRowMapper.class, FilmPopularityIndex.class, ReferenceDataRegistry.class,
+        GenreRowMapper.class, MpaRatingRowMapper.class})
 class FilmRepositoryTest {
     private final FilmRepository filmRepository;
+    private final FilmPopularityIndex popularityIndex;
 
     @BeforeEach
     void setUp() {
@@ -39,6 +49,16 @@ class FilmRepositoryTest {
         assertThat(filmRepository.getFilmById(savedFilm.getId())).isPresent();
     }
 
+    @Test
+    void shouldFillRatingNameAndSortedGenresWhenCreatingFilm() {
+        Film film = new Film(null, "New Film", "New Description",
+                LocalDate.of(2023, 3, 1), 150,
+                new MpaRating(1L, null), Set.of(new Genre(2L, null), new Genre(1L, null)), Set.of());
+        Film savedFilm = filmRepository.addNewFilm(film);
+        assertThat(savedFilm.getMpaRating().getName()).isEqualTo("G");
+        assertThat(savedFilm.getGenres()).extracting(Genre::getName).containsExactly("Комедия", "Драма");
+    }
+
     @Test
     void shouldReturnListOfFilmsWhenGetAllFilms() {
         Film film1 = new Film(null, "Film One", "Description One",
@@ -52,4 +72,63 @@ class FilmRepositoryTest {
         List<Film> films = filmRepository.getAllFilms();
         assertThat(films).hasSize(2);
     }
+
+    @Test
+    void shouldStreamFilmsWithTheirGenresWhenStreamingAllFilms() {
+        Film film1 = filmRepository.addNewFilm(new Film(null, "Film One", "Description One",
+                LocalDate.of(2023, 1, 1), 120,
+                new MpaRating(1L, "G"), Set.of(new Genre(1L, "Комедия"), new Genre(2L, "Драма")), Set.of()));
+        Film film2 = filmRepository.addNewFilm(new Film(null, "Film Two", "Description Two",
+                LocalDate.of(2023, 2, 1), 90,
+                new MpaRating(2L, "PG"), Set.of(), Set.of()));
+        List<Film> streamed = new ArrayList<>();
+        filmRepository.streamFilms(streamed::add);
+        assertThat(streamed).extracting(Film::getId).containsExactly(film1.getId(), film2.getId());
+        assertThat(streamed.get(0).getGenres()).extracting(Genre::getId).containsExactly(1L, 2L);
+        assertThat(streamed.get(1).getGenres()).isEmpty();
+    }
+
+    @Test
+    void shouldReplaceGenresWhenUpdatingFilm() {
+        Film film = filmRepository.addNewFilm(new Film(null, "Film One", "Description One",
+                LocalDate.of(2023, 1, 1), 120,
+                new MpaRating(1L, "G"), Set.of(new Genre(1L, "Комедия"), new Genre(2L, "Драма")), Set.of()));
+        film.setGenres(Set.of(new Genre(2L, "Драма"), new Genre(3L, "Мультфильм")));
+        filmRepository.updateFilm(film);
+        List<Film> streamed = new ArrayList<>();
+        filmRepository.streamFilms(streamed::add);
+        assertThat(streamed).hasSize(1);
+        assertThat(streamed.get(0).getGenres()).extracting(Genre::getId).containsExactly(2L, 3L);
+    }
+
+    @Test
+    void shouldFilterPopularFilmsByGenreAndYear() {
+        Film comedy = filmRepository.addNewFilm(new Film(null, "Comedy", "Description One",
+                LocalDate.of(2023, 1, 1), 120,
+                new MpaRating(1L, "G"), Set.of(new Genre(1L, "Комедия")), Set.of()));
+        Film drama = filmRepository.addNewFilm(new Film(null, "Drama", "Description Two",
+                LocalDate.of(2022, 1, 1), 90,
+                new MpaRating(1L, "G"), Set.of(new Genre(1L, "Комедия"), new Genre(2L, "Драма")), Set.of()));
+        popularityIndex.add(drama.getId(), 2);
+        popularityIndex.add(comedy.getId(), 1);
+        assertThat(filmRepository.getPopularFilms(10, 1L, null))
+                .extracting(Film::getId).containsExactly(drama.getId(), comedy.getId());
+        assertThat(filmRepository.getPopularFilms(10, 1L, 2023))
+                .extracting(Film::getId).containsExactly(comedy.getId());
+        assertThat(filmRepository.getPopularFilms(10, 2L, 2023)).isEmpty();
+        comedy.setGenres(Set.of(new Genre(2L, "Драма")));
+        filmRepository.updateFilm(comedy);
+        assertThat(filmRepository.getPopularFilms(10, 2L, 2023))
+                .extracting(Film::getId).containsExactly(comedy.getId());
+        assertThat(filmRepository.getPopularFilms(10, 1L, null))
+                .extracting(Film::getId).containsExactly(drama.getId());
+    }
+
+    @Test
+    void shouldThrowNotFoundWhenFilmHasUnknownGenre() {
+        Film film = new Film(null, "Film One", "Description One",
+                LocalDate.of(2023, 1, 1), 120,
+                new MpaRating(1L, "G"), Set.of(new Genre(1L, "Комедия"), new Genre(999L, "Нет")), Set.of());
+        assertThatThrownBy(() -> filmRepository.addNewFilm(film)).isInstanceOf(NotFoundException.class);
+    }
 }
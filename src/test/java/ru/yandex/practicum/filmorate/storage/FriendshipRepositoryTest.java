@@ -7,18 +7,22 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
+import ru.yandex.practicum.filmorate.exception.DuplicatedDataException;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.index.FriendGraphIndex;
+import ru.yandex.practicum.filmorate.storage.index.UserIdIndex;
 import ru.yandex.practicum.filmorate.storage.mappers.FriendshipRowMapper;
 import ru.yandex.practicum.filmorate.storage.mappers.UserRowMapper;
 
 import java.time.LocalDate;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @JdbcTest
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
-@Import({FriendshipRepository.class, FriendshipRowMapper.class, UserRepository.class, UserRowMapper.class})
+@Import({FriendshipRepository.class, FriendshipRowMapper.class, UserRepository.class, UserRowMapper.class, FriendGraphIndex.class, UserIdIndex.class})
 class FriendshipRepositoryTest {
     private final FriendshipRepository friendshipRepository;
     private final UserRepository userRepository;
@@ -59,4 +63,55 @@ class FriendshipRepositoryTest {
         var friends = userRepository.getFriends(userId2);
         assertThat(friends).noneMatch(friend -> friend.getId().equals(userId1));
     }
+
+    @Test
+    void shouldReturnCommonFriendsWhenBothUsersHaveThem() {
+        User user3 = userRepository.addNewUser(
+                new User(null, "user3@example.com", "User Three", "userthree", LocalDate.of(1990, 3, 3)));
+        User user4 = userRepository.addNewUser(
+                new User(null, "user4@example.com", "User Four", "userfour", LocalDate.of(1991, 4, 4)));
+        friendshipRepository.addFriend(user3.getId(), userId1);
+        friendshipRepository.addFriend(user3.getId(), userId2);
+        friendshipRepository.addFriend(user4.getId(), userId1);
+        assertThat(userRepository.getCommonFriends(userId1, userId2))
+                .extracting(User::getId)
+                .containsExactly(user3.getId());
+        assertThat(userRepository.getFriends(userId1))
+                .extracting(User::getId)
+                .containsExactly(user3.getId(), user4.getId());
+    }
+
+    @Test
+    void shouldThrowWhenAddingSameFriendTwice() {
+        friendshipRepository.addFriend(userId1, userId2);
+        assertThatThrownBy(() -> friendshipRepository.addFriend(userId1, userId2))
+                .isInstanceOf(DuplicatedDataException.class);
+    }
+
+    @Test
+    void shouldRankSuggestionsByMutualFriends() {
+        Long userId3 = addUser(3);
+        Long userId4 = addUser(4);
+        Long userId5 = addUser(5);
+        Long userId6 = addUser(6);
+        friendshipRepository.addFriend(userId3, userId1);
+        friendshipRepository.addFriend(userId4, userId1);
+        friendshipRepository.addFriend(userId1, userId3);
+        friendshipRepository.addFriend(userId6, userId3);
+        friendshipRepository.addFriend(userId5, userId3);
+        friendshipRepository.addFriend(userId5, userId4);
+        friendshipRepository.addFriend(userId4, userId3);
+        assertThat(userRepository.getSuggestedFriends(userId1, 10, 1000))
+                .extracting(User::getId)
+                .containsExactly(userId5, userId6);
+        assertThat(userRepository.getSuggestedFriends(userId1, 1, 1000))
+                .extracting(User::getId)
+                .containsExactly(userId5);
+    }
+
+    private Long addUser(int number) {
+        User user = new User(null, "user" + number + "@example.com", "User " + number, "user" + number,
+                LocalDate.of(1990, 1, number));
+        return userRepository.addNewUser(user).getId();
+    }
 }
@@ -6,20 +6,29 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.storage.mappers.FilmGenreRowMapper;
 import ru.yandex.practicum.filmorate.storage.mappers.GenreRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.MpaRatingRowMapper;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 @JdbcTest
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
-@Import({GenreRepository.class, GenreRowMapper.class})
+@Import({GenreRepository.class, GenreRowMapper.class, ReferenceDataRegistry.class, MpaRatingRowMapper.class,
+        FilmGenreRowMapper.class})
 class GenreRepositoryTest {
     private final GenreRepository genreRepository;
+    private final JdbcTemplate jdbc;
 
     @Test
     void shouldReturnListOfGenresWhenGetAllGenres() {
@@ -39,4 +48,19 @@ class GenreRepositoryTest {
         Optional<Genre> genre = genreRepository.getGenreById(999L);
         assertThat(genre).isEmpty();
     }
+
+    @Test
+    void shouldReturnGenresForEveryFilmWhenIdsSpanSeveralChunks() {
+        List<Long> filmIds = new ArrayList<>();
+        for (int idx = 0; idx < 501; idx++) {
+            jdbc.update("INSERT INTO films(name, description, release_date, duration, rating_id) " +
+                    "VALUES ('Film', 'Description', '2020-01-01', 100, 1)");
+            Long filmId = jdbc.queryForObject("SELECT MAX(id) FROM films", Long.class);
+            jdbc.update("INSERT INTO film_genres(film_id, genre_id) VALUES (?, ?)", filmId, idx % 6 + 1);
+            filmIds.add(filmId);
+        }
+        Map<Long, Set<Genre>> genresByFilm = genreRepository.findGenresForFilms(filmIds);
+        assertThat(genresByFilm).hasSize(501);
+        assertThat(genresByFilm.get(filmIds.get(500))).extracting(Genre::getId).containsExactly(3L);
+    }
 }
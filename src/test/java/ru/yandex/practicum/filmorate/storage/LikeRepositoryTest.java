@@ -7,26 +7,48 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.exception.DuplicatedDataException;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.MpaRating;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.storage.index.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmRecommender;
+import ru.yandex.practicum.filmorate.storage.index.FriendGraphIndex;
+import ru.yandex.practicum.filmorate.storage.index.LikeIndex;
+import ru.yandex.practicum.filmorate.storage.index.TrendingFilmsIndex;
+import ru.yandex.practicum.filmorate.storage.index.TrendingWindow;
+import ru.yandex.practicum.filmorate.storage.index.UserIdIndex;
+import ru.yandex.practicum.filmorate.storage.index.UserLikesIndex;
 import ru.yandex.practicum.filmorate.storage.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.GenreRowMapper;
 import ru.yandex.practicum.filmorate.storage.mappers.LikeRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.MpaRatingRowMapper;
 import ru.yandex.practicum.filmorate.storage.mappers.UserRowMapper;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @JdbcTest
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
-@Import({LikeRepository.class, LikeRowMapper.class, FilmRepository.class, FilmRowMapper.class, UserRepository.class, UserRowMapper.class})
+@Import({LikeRepository.class, LikeRowMapper.class, FilmRepository.class, FilmRowMapper.class, UserRepository.class, UserRowMapper.class, FriendGraphIndex.class,
+        FilmPopularityIndex.class, LikeIndex.class, UserIdIndex.class, UserLikesIndex.class, FilmRecommender.class, TrendingFilmsIndex.class, ReferenceDataRegistry.class, GenreRowMapper.class, MpaRatingRowMapper.class})
 class LikeRepositoryTest {
     private final LikeRepository likeRepository;
     private final FilmRepository filmRepository;
     private final UserRepository userRepository;
+    private final FilmRecommender recommender;
+    private final TrendingFilmsIndex trending;
+    private final JdbcTemplate jdbc;
 
     private Long filmId;
     private Long userId;
@@ -46,7 +68,7 @@ class LikeRepositoryTest {
         film.setDescription("Test Film Description");
         film.setReleaseDate(LocalDate.of(2023, 1, 1));
         film.setDuration(120);
-        film.setMpaRating(new ru.yandex.practicum.filmorate.model.MpaRating(1L, "G"));
+        film.setMpaRating(new MpaRating(1L, "G"));
         film = filmRepository.addNewFilm(film);
         filmId = film.getId();
     }
@@ -66,10 +88,154 @@ class LikeRepositoryTest {
         assertThat(likes).noneMatch(like -> like.getUserId().equals(userId));
     }
 
+    @Test
+    void shouldReportMissingFilmWhenIdDoesNotFitLikeIndex() {
+        long hugeId = 1L << 31;
+        assertThatThrownBy(() -> likeRepository.addLike(hugeId, userId))
+                .isInstanceOf(NotFoundException.class);
+        assertThatThrownBy(() -> likeRepository.deleteLike(filmId, hugeId))
+                .isInstanceOf(DuplicatedDataException.class);
+        assertThat(likeRepository.isLiked(hugeId, userId)).isFalse();
+    }
+
     @Test
     void shouldReturnListOfLikesWhenFindingLikesByFilmId() {
         likeRepository.addLike(filmId, userId);
         List<Like> likes = likeRepository.findLikesByFilmId(filmId);
         assertThat(likes).hasSize(1);
     }
+
+    @Test
+    void shouldGroupLikesByFilmWhenFindingLikesForFilms() {
+        Long otherId = addOtherFilm();
+        likeRepository.addLike(filmId, userId);
+        Map<Long, Set<Like>> likesByFilm = likeRepository.findLikesForFilms(List.of(filmId, otherId), 10);
+        assertThat(likesByFilm).containsOnlyKeys(filmId);
+        assertThat(likesByFilm.get(filmId)).extracting(Like::getUserId).containsExactly(userId);
+    }
+
+    @Test
+    void shouldReturnFirstLikesOnlyWhenFindingLikesForFilmsWithLimit() {
+        Long neighbourId = addNeighbour();
+        likeRepository.addLike(filmId, userId);
+        likeRepository.addLike(filmId, neighbourId);
+        Map<Long, Set<Like>> likesByFilm = likeRepository.findLikesForFilms(List.of(filmId), 1);
+        assertThat(likesByFilm.get(filmId)).extracting(Like::getUserId).containsExactly(userId);
+    }
+
+    @Test
+    void shouldReturnMostLikedFilmFirstWhenGettingPopularFilms() {
+        addOtherFilm();
+        likeRepository.addLike(filmId, userId);
+        List<Film> popular = filmRepository.getPopularFilms(1);
+        assertThat(popular).hasSize(1);
+        assertThat(popular.get(0).getId()).isEqualTo(filmId);
+    }
+
+    @Test
+    void shouldKeepLikeCountInSyncWhenAddingAndDeletingLikes() {
+        likeRepository.addLike(filmId, userId);
+        assertThat(likeCount()).isEqualTo(1);
+        likeRepository.deleteLike(filmId, userId);
+        assertThat(likeCount()).isZero();
+    }
+
+    @Test
+    void shouldRepairDriftedLikeCountWhenReconciling() {
+        likeRepository.addLike(filmId, userId);
+        jdbc.update("UPDATE films SET like_count = 5 WHERE id = ?", filmId);
+        assertThat(likeRepository.reconcileLikeCounts()).isEqualTo(1);
+        assertThat(likeCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldSkipRepeatedLikesAndMissingUnlikesWhenApplyingChanges() {
+        likeRepository.addLike(filmId, userId);
+        Like like = new Like(null, filmId, userId);
+        LikeRepository.AppliedLikeChanges repeated = likeRepository.applyLikeChanges(List.of(like), List.of());
+        assertThat(repeated.deltasByFilm()).isEmpty();
+        assertThat(repeated.applied()).isZero();
+        assertThat(likeCount()).isEqualTo(1);
+        LikeRepository.AppliedLikeChanges removed = likeRepository.applyLikeChanges(List.of(), List.of(like));
+        assertThat(removed.deltasByFilm()).containsEntry(filmId, -1L);
+        assertThat(removed.applied()).isEqualTo(1);
+        assertThat(likeRepository.applyLikeChanges(List.of(), List.of(like)).applied()).isZero();
+        assertThat(likeCount()).isZero();
+    }
+
+    @Test
+    void shouldRejectRepeatedLikeAndMissingUnlike() {
+        likeRepository.addLike(filmId, userId);
+        assertThat(likeRepository.isLiked(filmId, userId)).isTrue();
+        assertThatThrownBy(() -> likeRepository.addLike(filmId, userId))
+                .isInstanceOf(DuplicatedDataException.class);
+        likeRepository.deleteLike(filmId, userId);
+        assertThat(likeRepository.isLiked(filmId, userId)).isFalse();
+        assertThatThrownBy(() -> likeRepository.deleteLike(filmId, userId))
+                .isInstanceOf(DuplicatedDataException.class);
+        assertThat(likeCount()).isZero();
+    }
+
+    @Test
+    void shouldPageLikedFilmsByIdWhenGettingUserLikes() {
+        Long otherId = addOtherFilm();
+        likeRepository.addLike(otherId, userId);
+        likeRepository.addLike(filmId, userId);
+        assertThat(likeRepository.getLikedFilmIds(userId, 0, 10)).containsExactly(filmId, otherId);
+        assertThat(likeRepository.getLikedFilmIds(userId, filmId, 10)).containsExactly(otherId);
+        likeRepository.deleteLike(otherId, userId);
+        assertThat(likeRepository.getLikedFilmIds(userId, 0, 10)).containsExactly(filmId);
+    }
+
+    @Test
+    void shouldRecommendFilmsOfSimilarUsersAndRefreshAfterLike() {
+        Long otherId = addOtherFilm();
+        Long neighbourId = addNeighbour();
+        likeRepository.addLike(filmId, neighbourId);
+        likeRepository.addLike(otherId, neighbourId);
+        likeRepository.addLike(filmId, userId);
+        assertThat(recommender.recommend(userId, 10)).containsExactly(otherId);
+        likeRepository.addLike(otherId, userId);
+        assertThat(recommender.recommend(userId, 10)).isEmpty();
+        likeRepository.deleteLike(otherId, neighbourId);
+        likeRepository.deleteLike(otherId, userId);
+        assertThat(recommender.recommend(userId, 10)).isEmpty();
+    }
+
+    @Test
+    void shouldRankFilmsByLikesInsideTrendingWindow() {
+        Long otherId = addOtherFilm();
+        jdbc.update("INSERT INTO likes(film_id, user_id, created_at) VALUES (?, ?, DATEADD(HOUR, -2, LOCALTIMESTAMP))",
+                otherId, userId);
+        trending.reload();
+        likeRepository.addLike(filmId, userId);
+        assertThat(trending.getTopFilmIds(TrendingWindow.HOUR, 10)).containsExactly(filmId);
+        assertThat(trending.getTopFilmIds(TrendingWindow.DAY, 10)).containsExactly(filmId, otherId);
+        likeRepository.deleteLike(filmId, userId);
+        assertThat(trending.getTopFilmIds(TrendingWindow.HOUR, 10)).isEmpty();
+        assertThat(trending.getTopFilmIds(TrendingWindow.WEEK, 10)).containsExactly(otherId);
+    }
+
+    private Long addOtherFilm() {
+        Film other = new Film();
+        other.setName("Other Film");
+        other.setDescription("Other Film Description");
+        other.setReleaseDate(LocalDate.of(2022, 1, 1));
+        other.setDuration(90);
+        other.setMpaRating(new MpaRating(1L, "G"));
+        return filmRepository.addNewFilm(other).getId();
+    }
+
+    private Long addNeighbour() {
+        User neighbour = new User();
+        neighbour.setEmail("neighbour@example.com");
+        neighbour.setName("Neighbour");
+        neighbour.setLogin("neighbour");
+        neighbour.setBirthday(LocalDate.of(2000, 1, 1));
+        return userRepository.addNewUser(neighbour).getId();
+    }
+
+    private Long likeCount() {
+        return jdbc.queryForObject("SELECT like_count FROM films WHERE id = ?", Long.class, filmId);
+    }
 }
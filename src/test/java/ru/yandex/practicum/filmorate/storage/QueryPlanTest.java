@@ -0,0 +1,95 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.storage.index.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.index.FriendGraphIndex;
+import ru.yandex.practicum.filmorate.storage.index.LikeIndex;
+import ru.yandex.practicum.filmorate.storage.index.TrendingFilmsIndex;
+import ru.yandex.practicum.filmorate.storage.index.UserIdIndex;
+import ru.yandex.practicum.filmorate.storage.index.UserLikesIndex;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Проверяет планы всех SQL-запросов хранилища: запросы, не попавшие в список полных выборок,
+ * должны обращаться к таблицам через индексы.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class QueryPlanTest {
+    private static final List<Class<?>> QUERY_HOLDERS = List.of(
+            FilmRepository.class, UserRepository.class, LikeRepository.class, FriendshipRepository.class,
+            GenreRepository.class, FilmPopularityIndex.class, FriendGraphIndex.class, LikeIndex.class,
+            UserLikesIndex.class, UserIdIndex.class, TrendingFilmsIndex.class, ReferenceDataRegistry.class
+    );
+    // Запросы, которые по назначению читают таблицу целиком
+    private static final Set<String> FULL_SCANS = Set.of(
+            "FilmRepository.FIND_ALL_QUERY",
+            "FilmRepository.STREAM_ALL_QUERY",
+            "FilmRepository.STREAM_ALL_GENRES_QUERY",
+            "UserRepository.FIND_ALL_QUERY",
+            "LikeRepository.RECONCILE_LIKE_COUNTS_QUERY",
+            "FilmPopularityIndex.LOAD_QUERY",
+            "FilmPopularityIndex.LOAD_GENRES_QUERY",
+            "FriendGraphIndex.LOAD_QUERY",
+            "LikeIndex.LOAD_QUERY",
+            "UserLikesIndex.LOAD_QUERY",
+            "UserLikesIndex.LOAD_BY_FILM_QUERY",
+            "UserIdIndex.LOAD_QUERY",
+            "ReferenceDataRegistry.FIND_ALL_GENRES_QUERY",
+            "ReferenceDataRegistry.FIND_ALL_RATINGS_QUERY"
+    );
+
+    private final JdbcTemplate jdbc;
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("queries")
+    void shouldUseIndexesWhenQueryIsNotFullScan(String name, String query) {
+        String plan = jdbc.queryForObject("EXPLAIN " + query, String.class, parameters(query));
+        if (FULL_SCANS.contains(name)) {
+            return;
+        }
+        assertThat(plan).as(name).doesNotContain(".tableScan");
+    }
+
+    static Stream<Arguments> queries() throws IllegalAccessException {
+        List<Arguments> queries = new ArrayList<>();
+        for (Class<?> holder : QUERY_HOLDERS) {
+            for (Field field : holder.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) && field.getType() == String.class
+                        && field.getName().endsWith("_QUERY")) {
+                    field.setAccessible(true);
+                    queries.add(Arguments.of(holder.getSimpleName() + "." + field.getName(), field.get(null)));
+                }
+            }
+        }
+        return queries.stream();
+    }
+
+    // План строится при подготовке запроса, поэтому значения параметров важны только по форме:
+    // массив для "= ANY(?)", число для остальных
+    private static Object[] parameters(String query) {
+        List<Object> parameters = new ArrayList<>();
+        for (int idx = query.indexOf('?'); idx >= 0; idx = query.indexOf('?', idx + 1)) {
+            parameters.add(query.startsWith("ANY(", idx - 4) ? new Long[]{1L} : (Object) 1L);
+        }
+        return parameters.toArray();
+    }
+}
@@ -0,0 +1,42 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import javax.sql.DataSource;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StatementCacheMonitorTest {
+
+    @Test
+    void shouldCountRepeatedStatementAsHit() {
+        StatementCacheMonitor monitor = new StatementCacheMonitor();
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource(monitor, "QUERY_CACHE_SIZE=8"));
+        for (int idx = 0; idx < 3; idx++) {
+            jdbc.queryForObject("SELECT CAST(? AS BIGINT)", Long.class, 1L);
+        }
+        assertThat(monitor.getMisses()).isEqualTo(1);
+        assertThat(monitor.getHits()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldEvictStatementsBeyondQueryCacheSize() {
+        StatementCacheMonitor monitor = new StatementCacheMonitor();
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource(monitor, "QUERY_CACHE_SIZE=1"));
+        jdbc.queryForObject("SELECT CAST(? AS BIGINT)", Long.class, 1L);
+        jdbc.queryForObject("SELECT CAST(? AS BIGINT) + 1", Long.class, 1L);
+        jdbc.queryForObject("SELECT CAST(? AS BIGINT)", Long.class, 1L);
+        assertThat(monitor.getHits()).isZero();
+        assertThat(monitor.getMisses()).isEqualTo(3);
+    }
+
+    // Одно соединение на всю базу: кэш H2 привязан к соединению
+    private DataSource dataSource(StatementCacheMonitor monitor, String settings) {
+        SingleConnectionDataSource target = new SingleConnectionDataSource(
+                "jdbc:h2:mem:statement-cache-" + UUID.randomUUID() + ";" + settings, true);
+        return (DataSource) monitor.postProcessAfterInitialization(target, "dataSource");
+    }
+}
@@ -8,6 +8,8 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.index.FriendGraphIndex;
+import ru.yandex.practicum.filmorate.storage.index.UserIdIndex;
 import ru.yandex.practicum.filmorate.storage.mappers.UserRowMapper;
 
 import java.time.LocalDate;
@@ -19,7 +21,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 @JdbcTest
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
-@Import({UserRepository.class, UserRowMapper.class})
+@Import({UserRepository.class, UserRowMapper.class, FriendGraphIndex.class, UserIdIndex.class})
 class UserRepositoryTest {
     private final UserRepository userRepository;
 
@@ -60,4 +62,30 @@ class UserRepositoryTest {
         List<User> users = userRepository.getAllUsers();
         assertThat(users).hasSize(2);
     }
+
+    @Test
+    void shouldReturnUsersAfterCursorWhenGettingPage() {
+        User user1 = userRepository.addNewUser(
+                new User(null, "user1@example.com", "User One", "userone", LocalDate.of(1990, 1, 1)));
+        User user2 = userRepository.addNewUser(
+                new User(null, "user2@example.com", "User Two", "usertwo", LocalDate.of(1995, 5, 5)));
+        User user3 = userRepository.addNewUser(
+                new User(null, "user3@example.com", "User Three", "userthree", LocalDate.of(1999, 9, 9)));
+        List<User> page = userRepository.getUsersPage(user1.getId(), 1);
+        assertThat(page).extracting(User::getId).containsExactly(user2.getId());
+        assertThat(userRepository.getUsersPage(user2.getId(), 10))
+                .extracting(User::getId).containsExactly(user3.getId());
+    }
+
+    @Test
+    void shouldAssignIdsWhenAddingUsersInBatch() {
+        List<User> users = userRepository.addNewUsers(List.of(
+                new User(null, "user1@example.com", "User One", "userone", LocalDate.of(1990, 1, 1)),
+                new User(null, "user2@example.com", "User Two", "usertwo", LocalDate.of(1995, 5, 5))));
+        assertThat(users).extracting(User::getId).doesNotContainNull().doesNotHaveDuplicates();
+        assertThat(userRepository.exists(users.get(0).getId())).isTrue();
+        assertThat(userRepository.exists(-1L)).isFalse();
+        assertThat(userRepository.findExistingEmails(List.of("user2@example.com", "other@example.com")))
+                .containsExactly("user2@example.com");
+    }
 }
@@ -0,0 +1,81 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Транзакция лайка имитируется синхронизациями: лайк применяется к индексу до фиксации в базе
+class FilmPopularityIndexTest {
+    private JdbcTemplate jdbc;
+    private FilmPopularityIndex index;
+
+    @BeforeEach
+    void setUp() {
+        jdbc = new JdbcTemplate(new SingleConnectionDataSource(
+                "jdbc:h2:mem:popularity-index-" + UUID.randomUUID(), true));
+        jdbc.execute("CREATE TABLE films(id BIGINT, like_count BIGINT, release_date DATE)");
+        jdbc.execute("CREATE TABLE film_genres(film_id BIGINT, genre_id BIGINT)");
+        jdbc.update("INSERT INTO films VALUES (1, 0, DATE '2000-01-01')");
+        index = new FilmPopularityIndex(jdbc);
+        index.reload();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void shouldKeepLikeCommittedAfterReload() {
+        TransactionSynchronizationManager.initSynchronization();
+        index.increment(1);
+        index.reload();
+        jdbc.update("UPDATE films SET like_count = 1 WHERE id = 1");
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        assertThat(index.getLikeCount(1)).isEqualTo(1);
+    }
+
+    @Test
+    void shouldNotUndoRolledBackLikeTwiceAfterReload() {
+        TransactionSynchronizationManager.initSynchronization();
+        index.increment(1);
+        index.reload();
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        assertThat(index.getLikeCount(1)).isZero();
+    }
+
+    @Test
+    void shouldUndoRolledBackLike() {
+        TransactionSynchronizationManager.initSynchronization();
+        index.increment(1);
+        assertThat(index.getLikeCount(1)).isEqualTo(1);
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        assertThat(index.getLikeCount(1)).isZero();
+    }
+
+    @Test
+    void shouldLoadFilmWithoutReleaseDate() {
+        jdbc.update("INSERT INTO films VALUES (2, 3, NULL)");
+        index.reload();
+        assertThat(index.getTopFilmIds(10)).containsExactly(2L, 1L);
+        assertThat(index.getTopFilmIds(10, null, FilmPopularityIndex.FilmAttributes.UNKNOWN_YEAR))
+                .containsExactly(2L);
+    }
+
+    private static void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+    }
+}
@@ -0,0 +1,81 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Лайк выполняется, пока рекомендации считаются: сразу после чтения лайков соседа
+class FilmRecommenderTest {
+    private static final long USER = 1;
+    private static final long NEIGHBOUR = 2;
+    private static final long STRANGER = 3;
+
+    private LikesDuringRead userLikes;
+    private FilmRecommender recommender;
+
+    @BeforeEach
+    void setUp() {
+        userLikes = new LikesDuringRead();
+        recommender = new FilmRecommender(userLikes, 50, 100, 10_000, 100);
+        like(USER, 10);
+        like(NEIGHBOUR, 10);
+        like(NEIGHBOUR, 20);
+        like(STRANGER, 30);
+    }
+
+    @Test
+    void shouldCacheWhenUnrelatedUserLikesDuringComputation() {
+        userLikes.onRead(NEIGHBOUR, () -> like(STRANGER, 40));
+        assertThat(recommender.recommend(USER, 10)).containsExactly(20L);
+        assertThat(recommender.cachedUsers()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldNotCacheWhenNeighbourLikesDuringComputation() {
+        userLikes.onRead(NEIGHBOUR, () -> like(NEIGHBOUR, 50));
+        assertThat(recommender.recommend(USER, 10)).containsExactly(20L);
+        assertThat(recommender.cachedUsers()).isZero();
+        assertThat(recommender.recommend(USER, 10)).containsExactlyInAnyOrder(20L, 50L);
+        assertThat(recommender.cachedUsers()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldDropCachedResultWhenNeighbourLikes() {
+        recommender.recommend(USER, 10);
+        like(STRANGER, 40);
+        assertThat(recommender.cachedUsers()).isEqualTo(1);
+        like(NEIGHBOUR, 50);
+        assertThat(recommender.cachedUsers()).isZero();
+    }
+
+    private void like(long userId, long filmId) {
+        userLikes.add(userId, filmId);
+        recommender.likeChanged(filmId, userId);
+    }
+
+    private static final class LikesDuringRead extends UserLikesIndex {
+        private long userId;
+        private Runnable action;
+
+        private LikesDuringRead() {
+            super(null);
+        }
+
+        void onRead(long userId, Runnable action) {
+            this.userId = userId;
+            this.action = action;
+        }
+
+        @Override
+        long[] likedFilms(long userId) {
+            long[] films = super.likedFilms(userId);
+            if (action != null && userId == this.userId) {
+                Runnable pending = action;
+                action = null;
+                pending.run();
+            }
+            return films;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LikeIndexTest {
+
+    @Test
+    void shouldAddAndRemovePairOnce() {
+        LikeIndex index = new LikeIndex(jdbc());
+        assertThat(index.add(1, 2)).isTrue();
+        assertThat(index.add(1, 2)).isFalse();
+        assertThat(index.contains(1, 2)).isTrue();
+        assertThat(index.contains(2, 1)).isFalse();
+        assertThat(index.remove(1, 2)).isTrue();
+        assertThat(index.remove(1, 2)).isFalse();
+        assertThat(index.size()).isZero();
+    }
+
+    @Test
+    void shouldReplaceContentWithTableWhenReloading() {
+        JdbcTemplate jdbc = jdbc();
+        jdbc.execute("CREATE TABLE likes(film_id BIGINT, user_id BIGINT)");
+        jdbc.update("INSERT INTO likes VALUES (1, 1), (1, 2), (2, 1)");
+        LikeIndex index = new LikeIndex(jdbc);
+        index.add(3, 3);
+        index.reload();
+        assertThat(index.size()).isEqualTo(3);
+        assertThat(index.contains(1, 2)).isTrue();
+        assertThat(index.contains(3, 3)).isFalse();
+    }
+
+    @Test
+    void shouldTreatIdsBeyond31BitsAsNotLiked() {
+        LikeIndex index = new LikeIndex(jdbc());
+        assertThat(index.contains(1L << 31, 1)).isFalse();
+        assertThat(index.contains(1, Long.MAX_VALUE)).isFalse();
+        assertThat(index.remove(1L << 31, 1)).isFalse();
+        assertThat(LikeIndex.fits(Integer.MAX_VALUE, 0)).isTrue();
+    }
+
+    @Test
+    void shouldRejectIdsBeyond31Bits() {
+        assertThatThrownBy(() -> LikeIndex.pack(1L << 31, 1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> LikeIndex.pack(1, -1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(LikeIndex.pack(1, 2)).isEqualTo(1L << 32 | 2);
+    }
+
+    private static JdbcTemplate jdbc() {
+        return new JdbcTemplate(new SingleConnectionDataSource(
+                "jdbc:h2:mem:like-index-" + UUID.randomUUID(), true));
+    }
+}
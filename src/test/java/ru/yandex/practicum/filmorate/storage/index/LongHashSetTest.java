@@ -0,0 +1,105 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LongHashSetTest {
+
+    @Test
+    void shouldRejectDuplicateWhenAdding() {
+        LongHashSet set = new LongHashSet();
+        assertThat(set.add(42)).isTrue();
+        assertThat(set.add(42)).isFalse();
+        assertThat(set.size()).isEqualTo(1);
+        assertThat(set.contains(42)).isTrue();
+        assertThat(set.contains(43)).isFalse();
+    }
+
+    @Test
+    void shouldNotContainReservedKey() {
+        LongHashSet set = new LongHashSet();
+        set.add(1);
+        assertThat(set.contains(-1)).isFalse();
+        assertThat(set.remove(-1)).isFalse();
+        assertThat(set.size()).isEqualTo(1);
+        assertThatThrownBy(() -> set.add(-1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void shouldKeepKeysWhenGrowing() {
+        LongHashSet set = new LongHashSet();
+        for (long key = 0; key < 1000; key++) {
+            set.add(key);
+        }
+        assertThat(set.size()).isEqualTo(1000);
+        for (long key = 0; key < 1000; key++) {
+            assertThat(set.contains(key)).isTrue();
+        }
+    }
+
+    // Ключи с одной начальной ячейкой идут цепочкой: после удаления первого остальные сдвигаются назад
+    // и должны находиться, как и ключ, добавленный в цепочку после удаления
+    @Test
+    void shouldFindRestOfChainWhenRemovingWithBackwardShift() {
+        List<Long> chain = keysWithSameSlot(4);
+        LongHashSet set = new LongHashSet();
+        chain.subList(0, 3).forEach(set::add);
+        assertThat(set.remove(chain.get(0))).isTrue();
+        assertThat(set.remove(chain.get(0))).isFalse();
+        assertThat(set.contains(chain.get(1))).isTrue();
+        assertThat(set.contains(chain.get(2))).isTrue();
+        set.add(chain.get(3));
+        assertThat(set.remove(chain.get(2))).isTrue();
+        assertThat(set.contains(chain.get(1))).isTrue();
+        assertThat(set.contains(chain.get(3))).isTrue();
+        assertThat(set.size()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldMatchHashSetWhenAddingAndRemovingRandomKeys() {
+        Random random = new Random(42);
+        LongHashSet set = new LongHashSet();
+        Set<Long> expected = new HashSet<>();
+        for (int idx = 0; idx < 100_000; idx++) {
+            long key = random.nextInt(2000);
+            if (random.nextBoolean()) {
+                assertThat(set.add(key)).isEqualTo(expected.add(key));
+            } else {
+                assertThat(set.remove(key)).isEqualTo(expected.remove(key));
+            }
+        }
+        assertThat(set.size()).isEqualTo(expected.size());
+        Set<Long> actual = new HashSet<>();
+        set.forEach(actual::add);
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @Test
+    void shouldBeEmptyWhenCleared() {
+        LongHashSet set = new LongHashSet();
+        set.add(1);
+        set.add(2);
+        set.clear();
+        assertThat(set.size()).isZero();
+        assertThat(set.contains(1)).isFalse();
+    }
+
+    // Начальная емкость 16 ячеек, при ней цепочка из count ключей не вызывает рост
+    private static List<Long> keysWithSameSlot(int count) {
+        List<Long> keys = new ArrayList<>();
+        for (long key = 0; keys.size() < count; key++) {
+            if ((LongHashSet.mix(key) & 15) == 0) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,48 @@
+package ru.yandex.practicum.filmorate.storage.routing;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReadYourWritesFilterTest {
+    private final ReadYourWrites readYourWrites = new ReadYourWrites(Duration.ofMinutes(1), 100);
+    private final ReadYourWritesFilter filter = new ReadYourWritesFilter(readYourWrites);
+
+    @Test
+    void shouldPinClientToPrimaryAfterItsWrite() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/films/1/like/1");
+        request.addHeader(ReadYourWritesFilter.CLIENT_HEADER, "client");
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        assertThat(pinned("client")).isTrue();
+        assertThat(pinned("other")).isFalse();
+    }
+
+    @Test
+    void shouldNotPinByAddressWithoutClientHeader() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/films/1/like/1");
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        assertThat(pinned(request.getRemoteAddr())).isFalse();
+    }
+
+    @Test
+    void shouldNotPinAfterRead() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/films/1");
+        request.addHeader(ReadYourWritesFilter.CLIENT_HEADER, "client");
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        assertThat(pinned("client")).isFalse();
+    }
+
+    private boolean pinned(String client) {
+        readYourWrites.bind(client);
+        try {
+            return readYourWrites.isPinnedToPrimary();
+        } finally {
+            readYourWrites.unbind();
+        }
+    }
+}
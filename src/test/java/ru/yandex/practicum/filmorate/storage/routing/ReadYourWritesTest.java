@@ -0,0 +1,39 @@
+package ru.yandex.practicum.filmorate.storage.routing;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReadYourWritesTest {
+    private final ReadYourWrites readYourWrites = new ReadYourWrites(Duration.ofMillis(20), 100);
+
+    @Test
+    void shouldDropExpiredWriteWhenClientReads() throws InterruptedException {
+        readYourWrites.markWrite("client");
+        assertThat(pinned("client")).isTrue();
+        Thread.sleep(40);
+        assertThat(pinned("client")).isFalse();
+        assertThat(readYourWrites.size()).isZero();
+    }
+
+    @Test
+    void shouldDropExpiredWritesBelowClientLimit() throws InterruptedException {
+        readYourWrites.markWrite("first");
+        readYourWrites.markWrite("second");
+        Thread.sleep(40);
+        readYourWrites.markWrite("third");
+        assertThat(readYourWrites.size()).isEqualTo(1);
+        assertThat(pinned("third")).isTrue();
+    }
+
+    private boolean pinned(String client) {
+        readYourWrites.bind(client);
+        try {
+            return readYourWrites.isPinnedToPrimary();
+        } finally {
+            readYourWrites.unbind();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package ru.yandex.practicum.filmorate.storage.routing;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.UserRepository;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Две in-memory базы H2 без репликации между ними: по тому, в какой базе нашлась строка, видно,
+ * куда направлено чтение.
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = {
+                "spring.datasource.url=jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1",
+                "filmorate.datasource.replica.url=jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1",
+                "filmorate.datasource.replica.username=sa",
+                "filmorate.datasource.replica.password=password"
+        }
+)
+class ReplicaRoutingTest {
+    private static final long REPLICA_USER_ID = 1000L;
+    private static final String CLIENT = "client";
+
+    private final UserRepository userRepository;
+    private final ReadYourWrites readYourWrites;
+    private final TransactionTemplate transactionTemplate;
+    private final DataSource replicaDataSource;
+    private final JdbcTemplate primary;
+    private final JdbcTemplate replica;
+
+    @Autowired
+    ReplicaRoutingTest(UserRepository userRepository, ReadYourWrites readYourWrites,
+                       TransactionTemplate transactionTemplate,
+                       @Qualifier("primaryDataSource") DataSource primaryDataSource,
+                       @Qualifier("replicaDataSource") DataSource replicaDataSource) {
+        this.userRepository = userRepository;
+        this.readYourWrites = readYourWrites;
+        this.transactionTemplate = transactionTemplate;
+        this.replicaDataSource = replicaDataSource;
+        this.primary = new JdbcTemplate(primaryDataSource);
+        this.replica = new JdbcTemplate(replicaDataSource);
+    }
+
+    @BeforeEach
+    void setUp() {
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(replicaDataSource);
+        replica.update("MERGE INTO users (id, email, name, login, birthday) KEY(id) VALUES (?, ?, ?, ?, ?)",
+                REPLICA_USER_ID, "replica@example.com", "Replica User", "replica", LocalDate.of(2000, 1, 1));
+    }
+
+    @Test
+    void shouldReadFromReplicaInReadOnlyMethod() {
+        assertThat(userRepository.getUserById(REPLICA_USER_ID)).isPresent()
+                .hasValueSatisfying(user -> assertThat(user.getEmail()).isEqualTo("replica@example.com"));
+    }
+
+    @Test
+    void shouldReadFromPrimaryAfterOwnWrite() {
+        readYourWrites.markWrite(CLIENT);
+        readYourWrites.bind(CLIENT);
+        try {
+            assertThat(userRepository.getUserById(REPLICA_USER_ID)).isEmpty();
+        } finally {
+            readYourWrites.unbind();
+        }
+    }
+
+    @Test
+    void shouldReadFromReplicaForOtherClientAfterWrite() {
+        readYourWrites.markWrite(CLIENT);
+        readYourWrites.bind("other");
+        try {
+            assertThat(userRepository.getUserById(REPLICA_USER_ID)).isPresent();
+        } finally {
+            readYourWrites.unbind();
+        }
+    }
+
+    @Test
+    void shouldReadFromPrimaryInsideWriteTransaction() {
+        Optional<User> user = transactionTemplate.execute(status -> userRepository.getUserById(REPLICA_USER_ID));
+        assertThat(user).isEmpty();
+    }
+
+    @Test
+    void shouldWriteToPrimary() {
+        User user = new User(null, "primary@example.com", "Primary User", "primary", LocalDate.of(2000, 1, 1));
+        userRepository.addNewUser(user);
+        String countQuery = "SELECT COUNT(*) FROM users WHERE email = 'primary@example.com'";
+        assertThat(primary.queryForObject(countQuery, Integer.class)).isEqualTo(1);
+        assertThat(replica.queryForObject(countQuery, Integer.class)).isZero();
+    }
+}